@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr.bench;
+
+/**
+ * Benchmark of one phase of the HDR computation. The runner calls setup once
+ * per dataset, and prepare before every operation. Only run is timed.
+ * 
+ * @author Joeri
+ * 
+ */
+public abstract class Benchmark {
+
+	/**
+	 * Get name of this benchmark
+	 * 
+	 * @return name of this benchmark
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Prepare benchmark for a dataset
+	 * 
+	 * @param observations
+	 *            observations of the dataset
+	 */
+	public abstract void setup(double[][] observations);
+
+	/**
+	 * Prepare one operation, not timed
+	 */
+	public void prepare() {
+	}
+
+	/**
+	 * Run one operation
+	 * 
+	 * @return result of the operation, so that it is not optimized away
+	 */
+	public abstract double run();
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import nl.joeriadmiraal.hdr.ObservationParser;
+
+/**
+ * Runs benchmarks on datasets and writes the results as JSON, in the layout
+ * of JMH results (average time, milliseconds per operation). Every benchmark
+ * runs a number of warmup iterations followed by measured iterations, an
+ * iteration runs operations until a minimum time has passed.
+ * 
+ * Options: -wi warmup iterations, -i measured iterations, -t minimum time of
+ * an iteration in milliseconds, -b comma separated benchmark names, -d
+ * directory of datasets, -p comma separated datasets (file name without .txt,
+ * or normal-n for n generated observations), -o JSON output file.
+ * 
+ * @author Joeri
+ * 
+ */
+public class BenchmarkRunner {
+
+	private static final String[] DATASETS = { "Observations_i100",
+			"Observations_i1000", "Observations_i10000",
+			"Observations_i100000", "Observations_d", "normal-1000",
+			"normal-10000", "normal-100000" };
+	private static final String SYNTHETIC = "normal-";
+
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationTime = 1000;
+	private String directory = ".";
+	private List<String> benchmarks = new ArrayList<String>();
+	private List<String> datasets = new ArrayList<String>();
+	private String output = "results.json";
+	// Results of benchmarks are added, so the JIT cannot remove them
+	private double sink;
+
+	/**
+	 * Run benchmarks
+	 * 
+	 * @param args
+	 *            options
+	 */
+	public static void main(String[] args) throws IOException {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			runner.setOption(args[i], args[i + 1]);
+		}
+		if (runner.datasets.isEmpty()) {
+			for (String d : DATASETS) {
+				runner.datasets.add(d);
+			}
+		}
+		runner.run();
+	}
+
+	/**
+	 * Set option
+	 * 
+	 * @param name
+	 *            name of option
+	 * @param value
+	 *            value of option
+	 */
+	private void setOption(String name, String value) {
+		if (name.equals("-wi")) {
+			warmupIterations = Integer.parseInt(value);
+		} else if (name.equals("-i")) {
+			iterations = Integer.parseInt(value);
+		} else if (name.equals("-t")) {
+			iterationTime = Long.parseLong(value);
+		} else if (name.equals("-b")) {
+			for (String b : value.split(",")) {
+				benchmarks.add(b);
+			}
+		} else if (name.equals("-d")) {
+			directory = value;
+		} else if (name.equals("-p")) {
+			for (String d : value.split(",")) {
+				datasets.add(d);
+			}
+		} else if (name.equals("-o")) {
+			output = value;
+		} else {
+			throw new IllegalArgumentException("Unknown option " + name);
+		}
+	}
+
+	/**
+	 * Run all selected benchmarks on all datasets and write results
+	 */
+	private void run() throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(output));
+		out.println("[");
+		boolean first = true;
+		for (String dataset : datasets) {
+			double[][] observations = load(dataset);
+			for (Benchmark b : Benchmarks.all()) {
+				if (!benchmarks.isEmpty() && !benchmarks.contains(b.getName())) {
+					continue;
+				}
+				b.setup(observations);
+				for (int i = 0; i < warmupIterations; i++) {
+					iteration(b);
+				}
+				double[] scores = new double[iterations];
+				for (int i = 0; i < iterations; i++) {
+					scores[i] = iteration(b);
+				}
+				System.out.println(String.format(Locale.ROOT,
+						"%-16s %-22s %12.3f ms/op", b.getName(), dataset,
+						mean(scores)));
+				if (!first) {
+					out.println(",");
+				}
+				first = false;
+				write(out, b, dataset, scores);
+			}
+		}
+		out.println();
+		out.println("]");
+		out.close();
+		if (sink == 1.0) {
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Run one iteration of a benchmark
+	 * 
+	 * @param b
+	 *            benchmark
+	 * @return average time of an operation in milliseconds
+	 */
+	private double iteration(Benchmark b) {
+		long time = 0;
+		long start;
+		int operations = 0;
+		while (time < iterationTime * 1000000L) {
+			b.prepare();
+			start = System.nanoTime();
+			sink += b.run();
+			time += System.nanoTime() - start;
+			operations++;
+		}
+		return time / 1e6 / operations;
+	}
+
+	/**
+	 * Write result of a benchmark as JSON object
+	 * 
+	 * @param out
+	 *            output
+	 * @param b
+	 *            benchmark
+	 * @param dataset
+	 *            name of dataset
+	 * @param scores
+	 *            milliseconds per operation of every iteration
+	 */
+	private void write(PrintWriter out, Benchmark b, String dataset,
+			double[] scores) {
+		StringBuilder raw = new StringBuilder();
+		for (int i = 0; i < scores.length; i++) {
+			raw.append(i == 0 ? "" : ", ").append(
+					String.format(Locale.ROOT, "%.6f", scores[i]));
+		}
+		out.println("    {");
+		out.println("        \"benchmark\" : \""
+				+ Benchmarks.class.getName() + "." + b.getName() + "\",");
+		out.println("        \"mode\" : \"avgt\",");
+		out.println("        \"threads\" : 1,");
+		out.println("        \"warmupIterations\" : " + warmupIterations
+				+ ",");
+		out.println("        \"measurementIterations\" : " + iterations + ",");
+		out.println("        \"params\" : {");
+		out.println("            \"dataset\" : \"" + dataset + "\"");
+		out.println("        },");
+		out.println("        \"primaryMetric\" : {");
+		out.println(String.format(Locale.ROOT,
+				"            \"score\" : %.6f,", mean(scores)));
+		out.println(String.format(Locale.ROOT,
+				"            \"scoreError\" : %.6f,", error(scores)));
+		out.println("            \"scoreUnit\" : \"ms/op\",");
+		out.println("            \"rawData\" : [ [ " + raw + " ] ]");
+		out.println("        }");
+		out.print("    }");
+	}
+
+	/**
+	 * Get mean of scores
+	 * 
+	 * @param scores
+	 *            scores
+	 * @return mean
+	 */
+	private static double mean(double[] scores) {
+		double sum = 0.0;
+		for (double s : scores) {
+			sum += s;
+		}
+		return sum / scores.length;
+	}
+
+	/**
+	 * Get half width of the 99.9% confidence interval of the mean, using the
+	 * normal distribution
+	 * 
+	 * @param scores
+	 *            scores
+	 * @return error of mean
+	 */
+	private static double error(double[] scores) {
+		if (scores.length < 2) {
+			return Double.NaN;
+		}
+		double mean = mean(scores);
+		double sum = 0.0;
+		for (double s : scores) {
+			sum += (s - mean) * (s - mean);
+		}
+		return 3.29 * Math.sqrt(sum / (scores.length - 1) / scores.length);
+	}
+
+	/**
+	 * Load dataset, from file or generated
+	 * 
+	 * @param dataset
+	 *            name of dataset
+	 * @return observations
+	 */
+	private double[][] load(String dataset) throws IOException {
+		if (dataset.startsWith(SYNTHETIC)) {
+			return generate(Integer.parseInt(dataset.substring(SYNTHETIC
+					.length())));
+		}
+		return ObservationParser.read(directory + "/" + dataset + ".txt")
+				.toArray();
+	}
+
+	/**
+	 * Generate normal distributed observations, with the parameters of Main
+	 * and a fixed seed so every run uses the same observations
+	 * 
+	 * @param n
+	 *            number of observations
+	 * @return observations
+	 */
+	private static double[][] generate(int n) {
+		Random generator = new Random(n);
+		double[][] observations = new double[n][2];
+		for (int i = 0; i < n; i++) {
+			observations[i][0] = 2.0 * generator.nextGaussian();
+			observations[i][1] = generator.nextGaussian();
+		}
+		return observations;
+	}
+}
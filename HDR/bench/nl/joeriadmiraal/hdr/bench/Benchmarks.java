@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.joeriadmiraal.hdr.ArrayObservations;
+import nl.joeriadmiraal.hdr.GraphTheory;
+import nl.joeriadmiraal.hdr.InsertionKernel;
+import nl.joeriadmiraal.hdr.InsertionOrder;
+import nl.joeriadmiraal.hdr.MeshTriangulation;
+import nl.joeriadmiraal.hdr.Observations;
+import nl.joeriadmiraal.hdr.Triangle;
+import nl.joeriadmiraal.hdr.Vertex;
+import nl.joeriadmiraal.hdr.Watson;
+
+/**
+ * Benchmarks of the phases of the HDR computation: triangulation (by Watson
+ * and on a TriangleMesh with either insertion kernel), Voronoi cells, graph
+ * methods and the circumcircle test
+ * 
+ * @author Joeri
+ * 
+ */
+public class Benchmarks {
+
+	// Percentage of observations to be excluded from the hdr
+	private static final double ALPHA = 0.1;
+
+	/**
+	 * Get all benchmarks
+	 * 
+	 * @return new instance of every benchmark
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new WatsonBuild());
+		benchmarks.add(new MeshBuild());
+		benchmarks.add(new LawsonBuild());
+		benchmarks.add(new CalcVoronoi());
+		benchmarks.add(new Simple());
+		benchmarks.add(new TopDown());
+		benchmarks.add(new BottomUp());
+		benchmarks.add(new InCircumcircle());
+		return benchmarks;
+	}
+
+	/**
+	 * Create Delaunay triangulation with Voronoi data
+	 * 
+	 * @param observations
+	 *            observations
+	 * @return triangulation with Voronoi data
+	 */
+	private static Watson voronoi(double[][] observations) {
+		Watson w = new Watson(observations);
+		w.calcVoronoi();
+		return w;
+	}
+
+	/**
+	 * Construction of the Delaunay triangulation by Watson
+	 */
+	public static class WatsonBuild extends Benchmark {
+
+		private double[][] observations;
+
+		public void setup(double[][] observations) {
+			this.observations = observations;
+		}
+
+		public double run() {
+			return new Watson(observations).getVertices().size();
+		}
+	}
+
+	/**
+	 * Construction of the Delaunay triangulation on a TriangleMesh, inserting
+	 * vertices with Bowyer-Watson cavities
+	 */
+	public static class MeshBuild extends Benchmark {
+
+		private Observations observations;
+		private InsertionKernel kernel;
+
+		public MeshBuild() {
+			this(InsertionKernel.BOWYER_WATSON);
+		}
+
+		MeshBuild(InsertionKernel kernel) {
+			this.kernel = kernel;
+		}
+
+		public void setup(double[][] observations) {
+			this.observations = new ArrayObservations(observations);
+		}
+
+		public double run() {
+			return new MeshTriangulation(observations, InsertionOrder.HILBERT,
+					kernel).getVertices().size();
+		}
+	}
+
+	/**
+	 * Construction of the Delaunay triangulation on a TriangleMesh, inserting
+	 * vertices with Lawson edge flips
+	 */
+	public static class LawsonBuild extends MeshBuild {
+
+		public LawsonBuild() {
+			super(InsertionKernel.LAWSON);
+		}
+	}
+
+	/**
+	 * Calculation of Voronoi cells, on a new triangulation every operation
+	 */
+	public static class CalcVoronoi extends Benchmark {
+
+		private double[][] observations;
+		private Watson w;
+
+		public void setup(double[][] observations) {
+			this.observations = observations;
+		}
+
+		public void prepare() {
+			w = new Watson(observations);
+		}
+
+		public double run() {
+			w.calcVoronoi();
+			return w.getVertices().get(0).getArea();
+		}
+	}
+
+	/**
+	 * Simple HDR, only smallest cells
+	 */
+	public static class Simple extends Benchmark {
+
+		private GraphTheory graph;
+		private int nrToRemove;
+
+		public void setup(double[][] observations) {
+			graph = new GraphTheory(voronoi(observations));
+			nrToRemove = (int) (ALPHA * observations.length);
+		}
+
+		public double run() {
+			graph.simple(nrToRemove);
+			return graph.getArea();
+		}
+	}
+
+	/**
+	 * HDR with top-down approach
+	 */
+	public static class TopDown extends Benchmark {
+
+		private GraphTheory graph;
+		private int nrToRemove;
+
+		public void setup(double[][] observations) {
+			graph = new GraphTheory(voronoi(observations));
+			nrToRemove = (int) (ALPHA * observations.length);
+		}
+
+		public double run() {
+			graph.topDown(nrToRemove);
+			return graph.getArea();
+		}
+	}
+
+	/**
+	 * HDR with bottom-up approach
+	 */
+	public static class BottomUp extends Benchmark {
+
+		private GraphTheory graph;
+		private int nrToAdd;
+
+		public void setup(double[][] observations) {
+			graph = new GraphTheory(voronoi(observations));
+			nrToAdd = (int) ((1.0 - ALPHA) * observations.length);
+		}
+
+		public double run() {
+			graph.bottomUp(nrToAdd);
+			return graph.getArea();
+		}
+	}
+
+	/**
+	 * Circumcircle test of triangles of the triangulation against random
+	 * points in the bounds of the observations, 2^20 tests per operation
+	 */
+	public static class InCircumcircle extends Benchmark {
+
+		private static final int TESTS = 1 << 20;
+		private Triangle[] triangles;
+		private Vertex[] points;
+
+		public void setup(double[][] observations) {
+			Watson w = new Watson(observations);
+			List<Triangle> list = w.getTriangles();
+			triangles = list.toArray(new Triangle[list.size()]);
+			double minX = Double.POSITIVE_INFINITY, minY = minX;
+			double maxX = Double.NEGATIVE_INFINITY, maxY = maxX;
+			for (double[] o : observations) {
+				minX = Math.min(minX, o[0]);
+				maxX = Math.max(maxX, o[0]);
+				minY = Math.min(minY, o[1]);
+				maxY = Math.max(maxY, o[1]);
+			}
+			Random random = new Random(1);
+			points = new Vertex[1024];
+			for (int i = 0; i < points.length; i++) {
+				points[i] = new Vertex(minX + random.nextDouble()
+						* (maxX - minX), minY + random.nextDouble()
+						* (maxY - minY));
+			}
+		}
+
+		public double run() {
+			int inside = 0;
+			for (int i = 0; i < TESTS; i++) {
+				if (triangles[i % triangles.length].inCircumcircle(points[i
+						& (points.length - 1)])) {
+					inside++;
+				}
+			}
+			return inside;
+		}
+	}
+}
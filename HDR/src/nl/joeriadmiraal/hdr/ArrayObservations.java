@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Arrays;
+
+/**
+ * Observations in two arrays of coordinates, that grow when observations are
+ * added
+ * 
+ * @author Joeri
+ * 
+ */
+public class ArrayObservations implements Observations {
+
+	private double[] xs;
+	private double[] ys;
+	private int size;
+
+	/**
+	 * Create empty observations
+	 * 
+	 * @param capacity
+	 *            expected number of observations
+	 */
+	public ArrayObservations(int capacity) {
+		xs = new double[Math.max(capacity, 1)];
+		ys = new double[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Create observations from rows of coordinates
+	 * 
+	 * @param observations
+	 *            observations with x-coord in first column and y-coord in
+	 *            second column
+	 */
+	public ArrayObservations(double[][] observations) {
+		this(observations.length);
+		for (double[] o : observations) {
+			add(o[0], o[1]);
+		}
+	}
+
+	/**
+	 * Add observation
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 */
+	public void add(double x, double y) {
+		if (size == xs.length) {
+			xs = Arrays.copyOf(xs, 2 * size);
+			ys = Arrays.copyOf(ys, 2 * size);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double x(int i) {
+		return xs[i];
+	}
+
+	public double y(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * Get observations as rows of coordinates
+	 * 
+	 * @return observations with x-coord in first column and y-coord in second
+	 *         column
+	 */
+	public double[][] toArray() {
+		double[][] observations = new double[size][2];
+		for (int i = 0; i < size; i++) {
+			observations[i][0] = xs[i];
+			observations[i][1] = ys[i];
+		}
+		return observations;
+	}
+}
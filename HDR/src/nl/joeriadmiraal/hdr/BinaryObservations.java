@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Observations in a binary file, read through memory mapping. The file starts
+ * with a header of 16 bytes: the magic number, the version and the number of
+ * observations as long. After that come all x-coordinates and then all
+ * y-coordinates. All numbers are little-endian. A column is mapped in windows
+ * of at most 1 GB, because a mapped buffer is indexed by int.
+ * 
+ * @author Joeri
+ * 
+ */
+public class BinaryObservations implements Observations {
+
+	/**
+	 * First bytes of a file with observations, "HDRO"
+	 */
+	public static final int MAGIC = 0x4F524448;
+	/**
+	 * Version of the file format
+	 */
+	public static final int VERSION = 1;
+	private static final int HEADER = 16;
+	// Number of doubles in a window, 2^27 doubles is 1 GB
+	private static final int WINDOW_SHIFT = 27;
+	private static final int WINDOW_MASK = (1 << WINDOW_SHIFT) - 1;
+	// Size of buffer used for writing
+	private static final int BUFFER = 1 << 16;
+
+	private DoubleBuffer[] xs;
+	private DoubleBuffer[] ys;
+	private int size;
+
+	/**
+	 * Open observations in a binary file
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @throws IOException
+	 *             if the file can not be read or is not a file with
+	 *             observations
+	 */
+	public BinaryObservations(String fileName) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(
+					ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					throw new IOException("File too short: " + fileName);
+				}
+			}
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a file with observations: "
+						+ fileName);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version " + version + ": "
+						+ fileName);
+			}
+			long count = header.getLong();
+			if (count < 0 || count > Integer.MAX_VALUE
+					|| channel.size() < HEADER + 16 * count) {
+				throw new IOException("Invalid number of observations "
+						+ count + ": " + fileName);
+			}
+			size = (int) count;
+			xs = map(channel, HEADER);
+			ys = map(channel, HEADER + 8L * size);
+		} finally {
+			// Mapped buffers remain valid after closing
+			channel.close();
+		}
+	}
+
+	/**
+	 * Map a column in windows
+	 * 
+	 * @param channel
+	 *            channel of the file
+	 * @param position
+	 *            position of the column in the file
+	 * @return buffers of the windows
+	 */
+	private DoubleBuffer[] map(FileChannel channel, long position)
+			throws IOException {
+		DoubleBuffer[] windows = new DoubleBuffer[(size + WINDOW_MASK) >>> WINDOW_SHIFT];
+		long start;
+		int length;
+		for (int w = 0; w < windows.length; w++) {
+			start = (long) w << WINDOW_SHIFT;
+			length = (int) Math.min(size - start, 1L << WINDOW_SHIFT);
+			windows[w] = channel
+					.map(MapMode.READ_ONLY, position + 8 * start, 8L * length)
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		}
+		return windows;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double x(int i) {
+		return xs[i >>> WINDOW_SHIFT].get(i & WINDOW_MASK);
+	}
+
+	public double y(int i) {
+		return ys[i >>> WINDOW_SHIFT].get(i & WINDOW_MASK);
+	}
+
+	/**
+	 * Write observations to a binary file
+	 * 
+	 * @param observations
+	 *            observations to write
+	 * @param fileName
+	 *            name of the file
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public static void write(Observations observations, String fileName)
+			throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER).order(
+					ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putLong(observations.size());
+			for (int i = 0; i < observations.size(); i++) {
+				if (!buffer.hasRemaining()) {
+					flush(channel, buffer);
+				}
+				buffer.putDouble(observations.x(i));
+			}
+			for (int i = 0; i < observations.size(); i++) {
+				if (!buffer.hasRemaining()) {
+					flush(channel, buffer);
+				}
+				buffer.putDouble(observations.y(i));
+			}
+			flush(channel, buffer);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Write contents of buffer to channel and clear buffer
+	 * 
+	 * @param channel
+	 *            channel to write to
+	 * @param buffer
+	 *            buffer to write
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Convert text file with observations to binary file. Each observation
+	 * should be on an own line, with two coordinates seperated with a tab.
+	 * The text is read with ObservationParser.
+	 * 
+	 * @param textFile
+	 *            name of the text file
+	 * @param binaryFile
+	 *            name of the binary file
+	 * @throws IOException
+	 *             if a file can not be read or written
+	 */
+	public static void convert(String textFile, String binaryFile)
+			throws IOException {
+		Observations observations = ObservationParser.read(textFile);
+		write(observations, binaryFile);
+	}
+
+	/**
+	 * Convert text files with observations to binary files, the binary file of
+	 * name.txt is name.bin
+	 * 
+	 * @param args
+	 *            names of text files
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String textFile : args) {
+			String binaryFile = (textFile.endsWith(".txt") ? textFile
+					.substring(0, textFile.length() - 4) : textFile) + ".bin";
+			convert(textFile, binaryFile);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Bounding box of observations. Starts empty and grows to contain every added
+ * point.
+ * 
+ * @author Joeri
+ * 
+ */
+public class Bounds {
+
+	private double minX = Double.POSITIVE_INFINITY;
+	private double minY = Double.POSITIVE_INFINITY;
+	private double maxX = Double.NEGATIVE_INFINITY;
+	private double maxY = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Grow bounds to contain point (x, y)
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 */
+	public void add(double x, double y) {
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+	}
+
+	/**
+	 * Check whether no point was added
+	 * 
+	 * @return true if bounds contain no point
+	 */
+	public boolean isEmpty() {
+		return minX > maxX;
+	}
+
+	/**
+	 * Get smallest x-coordinate
+	 * 
+	 * @return smallest x-coordinate
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Get smallest y-coordinate
+	 * 
+	 * @return smallest y-coordinate
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Get largest x-coordinate
+	 * 
+	 * @return largest x-coordinate
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Get largest y-coordinate
+	 * 
+	 * @return largest y-coordinate
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Get width
+	 * 
+	 * @return width, 0 if empty
+	 */
+	public double getWidth() {
+		return isEmpty() ? 0.0 : maxX - minX;
+	}
+
+	/**
+	 * Get height
+	 * 
+	 * @return height, 0 if empty
+	 */
+	public double getHeight() {
+		return isEmpty() ? 0.0 : maxY - minY;
+	}
+}
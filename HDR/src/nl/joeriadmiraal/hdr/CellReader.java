@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the Voronoi cells written by TiledTriangulation one at a time. Each
+ * cell has the id of its observation, the coordinates, the number of
+ * duplicates, whether it is bound, its area and the ids of its neighbours in
+ * counterclockwise order. Cells are ordered by tile, not by id.
+ * 
+ * @author Joeri
+ * 
+ */
+public class CellReader implements Closeable {
+
+	private static final int BUFFER = 1 << 16;
+
+	private FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER).order(
+			ByteOrder.LITTLE_ENDIAN);
+	private long nrCells;
+	private long nrRead;
+
+	// Current cell
+	private int id;
+	private double x;
+	private double y;
+	private int nrDuplicates;
+	private boolean bound;
+	private double area;
+	private int nrNeighbours;
+	private int[] neighbours = new int[16];
+
+	/**
+	 * Open a file with cells
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @throws IOException
+	 *             if the file can not be read or is not a file with cells
+	 */
+	public CellReader(String fileName) throws IOException {
+		channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		buffer.limit(0);
+		ensure(TiledTriangulation.HEADER);
+		if (buffer.getInt() != TiledTriangulation.MAGIC) {
+			channel.close();
+			throw new IOException(fileName + " is not a file with cells");
+		}
+		int version = buffer.getInt();
+		if (version != TiledTriangulation.VERSION) {
+			channel.close();
+			throw new IOException("Unsupported version " + version + " of "
+					+ fileName);
+		}
+		nrCells = buffer.getLong();
+	}
+
+	/**
+	 * Get number of cells in the file
+	 * 
+	 * @return number of cells
+	 */
+	public long getNrCells() {
+		return nrCells;
+	}
+
+	/**
+	 * Read the next cell
+	 * 
+	 * @return true if a cell was read, false at the end of the file
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public boolean next() throws IOException {
+		if (nrRead == nrCells) {
+			return false;
+		}
+		ensure(4 + 16 + 4 + 1 + 8 + 4);
+		id = buffer.getInt();
+		x = buffer.getDouble();
+		y = buffer.getDouble();
+		nrDuplicates = buffer.getInt();
+		bound = buffer.get() != 0;
+		area = buffer.getDouble();
+		nrNeighbours = buffer.getInt();
+		if (nrNeighbours > neighbours.length) {
+			neighbours = new int[Math.max(nrNeighbours, 2 * neighbours.length)];
+		}
+		ensure(4 * nrNeighbours);
+		for (int i = 0; i < nrNeighbours; i++) {
+			neighbours[i] = buffer.getInt();
+		}
+		nrRead++;
+		return true;
+	}
+
+	/**
+	 * Make sure a number of bytes is in the buffer
+	 * 
+	 * @param bytes
+	 *            number of bytes needed
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of file with cells");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Get id of the observation of the current cell
+	 * 
+	 * @return id
+	 */
+	public int getID() {
+		return id;
+	}
+
+	/**
+	 * Get x-coordinate of the current cell
+	 * 
+	 * @return x-coordinate
+	 */
+	public double x() {
+		return x;
+	}
+
+	/**
+	 * Get y-coordinate of the current cell
+	 * 
+	 * @return y-coordinate
+	 */
+	public double y() {
+		return y;
+	}
+
+	/**
+	 * Get number of duplicate observations of the current cell
+	 * 
+	 * @return number of duplicates
+	 */
+	public int getNrDuplicates() {
+		return nrDuplicates;
+	}
+
+	/**
+	 * Check whether the current cell is bound (on the convex hull)
+	 * 
+	 * @return true if the cell is bound
+	 */
+	public boolean isBound() {
+		return bound;
+	}
+
+	/**
+	 * Get area of the current cell per observation
+	 * 
+	 * @return area, infinite if the cell is bound
+	 */
+	public double getArea() {
+		return area;
+	}
+
+	/**
+	 * Get number of neighbours of the current cell
+	 * 
+	 * @return number of neighbours
+	 */
+	public int getNrNeighbours() {
+		return nrNeighbours;
+	}
+
+	/**
+	 * Get id of a neighbour of the current cell
+	 * 
+	 * @param i
+	 *            number of the neighbour, 0 to getNrNeighbours() - 1
+	 * @return id of the neighbour
+	 */
+	public int getNeighbour(int i) {
+		return neighbours[i];
+	}
+
+	/**
+	 * Get ids of the neighbours of the current cell
+	 * 
+	 * @return ids of the neighbours, counterclockwise
+	 */
+	public int[] getNeighbours() {
+		return Arrays.copyOf(neighbours, nrNeighbours);
+	}
+
+	/**
+	 * Close the file
+	 * 
+	 * @throws IOException
+	 *             if the file can not be closed
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Read all cells of a file into vertices, which can be given to
+	 * GraphTheory to compute HDRs. Only for files that fit in memory.
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @return vertices with area, duplicates and neighbours
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static List<Vertex> readVertices(String fileName) throws IOException {
+		CellReader reader = new CellReader(fileName);
+		try {
+			List<Vertex> vertices = new ArrayList<Vertex>(
+					(int) reader.getNrCells());
+			Vertex v;
+			while (reader.next()) {
+				v = new Vertex(reader.x(), reader.y());
+				v.setID(reader.getID());
+				for (int i = 0; i < reader.getNrDuplicates(); i++) {
+					v.addDuplicate();
+				}
+				v.setBound(reader.isBound());
+				v.setArea(reader.getArea());
+				for (int i = 0; i < reader.getNrNeighbours(); i++) {
+					v.addNeighbour(reader.getNeighbour(i));
+				}
+				vertices.add(v);
+			}
+			return vertices;
+		} finally {
+			reader.close();
+		}
+	}
+}
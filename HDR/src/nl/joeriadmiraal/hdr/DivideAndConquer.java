@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Implementation of the divide and conquer algorithm of Guibas and Stolfi for
+ * Delaunay triangulation. Vertices are sorted and split in halves
+ * recursively, halves are triangulated in parallel and merged. The result
+ * has the same vertices, edges and triangles as Watson, except that the
+ * boundary is the exact convex hull.
+ * 
+ * @author Joeri
+ * 
+ */
+public class DivideAndConquer extends Triangulation {
+
+	// Number of vertices below which halves are triangulated sequentially
+	private static final int SEQUENTIAL = 4096;
+
+	// Lexicographic order of vertices, on x-coordinate and then y-coordinate
+	private static final Comparator<Vertex> ORDER = new Comparator<Vertex>() {
+		public int compare(Vertex a, Vertex b) {
+			int c = Double.compare(a.x(), b.x());
+			return c != 0 ? c : Double.compare(a.y(), b.y());
+		}
+	};
+
+	/**
+	 * Create Delaunay triangulation for observations using all processors
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 */
+	public DivideAndConquer(double[][] observations) {
+		this(new ArrayObservations(observations));
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param pool
+	 *            pool to run the parallel tasks in
+	 */
+	public DivideAndConquer(double[][] observations, ForkJoinPool pool) {
+		this(new ArrayObservations(observations), pool);
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations using all processors
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 */
+	public DivideAndConquer(Observations observations) {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			build(observations, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param pool
+	 *            pool to run the parallel tasks in
+	 */
+	public DivideAndConquer(Observations observations, ForkJoinPool pool) {
+		build(observations, pool);
+	}
+
+	/**
+	 * Triangulate observations and create edges and triangles
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param pool
+	 *            pool to run the parallel tasks in
+	 */
+	private void build(Observations observations, ForkJoinPool pool) {
+		// Create vertices of observations
+		readObservations(observations);
+		Vertex[] sorted = vertices.toArray(new Vertex[vertices.size()]);
+		pool.invoke(new Sort(sorted, new Vertex[sorted.length], 0,
+				sorted.length));
+		vertices = new ArrayList<Vertex>(Arrays.asList(sorted));
+
+		if (sorted.length < 2) {
+			return;
+		}
+		Edge[] hull = pool.invoke(new Triangulate(sorted, 0, sorted.length));
+		createEdges(hull[0]);
+	}
+
+	/**
+	 * Create triangles and edges of the quad-edge structure
+	 * 
+	 * @param start
+	 *            any edge of the structure
+	 */
+	private void createEdges(Edge start) {
+		// Collect all directed edges
+		List<Edge> all = new ArrayList<Edge>();
+		List<Edge> stack = new ArrayList<Edge>();
+		Edge e = start;
+		e.visited = true;
+		stack.add(e);
+		while (!stack.isEmpty()) {
+			e = stack.remove(stack.size() - 1);
+			all.add(e);
+			if (!e.sym().visited) {
+				e.sym().visited = true;
+				stack.add(e.sym());
+			}
+			if (!e.onext.visited) {
+				e.onext.visited = true;
+				stack.add(e.onext);
+			}
+		}
+
+		// Every counterclockwise face of three edges is a triangle (the outer
+		// face is clockwise)
+		Edge second, third;
+		Triangle t;
+		for (Edge d : all) {
+			second = d.lnext();
+			third = second.lnext();
+			if (d.left == null && third.lnext() == d
+					&& ccw(d.org, d.dest(), second.dest())) {
+				t = new Triangle(d.org, d.dest(), second.dest());
+				addTriangle(t);
+				d.left = t;
+				second.left = t;
+				third.left = t;
+			}
+		}
+
+		// Create one edge for both directions
+		for (Edge d : all) {
+			if (d.primary) {
+				addEdge(d.org, d.dest(), d.left, d.sym().left);
+			}
+		}
+	}
+
+	/**
+	 * Check whether a, b and c are counterclockwise
+	 */
+	private static boolean ccw(Vertex a, Vertex b, Vertex c) {
+		return Predicates.orient2d(a.x(), a.y(), b.x(), b.y(), c.x(), c.y()) > 0;
+	}
+
+	/**
+	 * Check whether x is right of edge e
+	 */
+	private static boolean rightOf(Vertex x, Edge e) {
+		return ccw(x, e.dest(), e.org);
+	}
+
+	/**
+	 * Check whether x is left of edge e
+	 */
+	private static boolean leftOf(Vertex x, Edge e) {
+		return ccw(x, e.org, e.dest());
+	}
+
+	/**
+	 * Check whether d is inside the circle through counterclockwise a, b and c
+	 */
+	private static boolean inCircle(Vertex a, Vertex b, Vertex c, Vertex d) {
+		// The next candidate wraps around to the base edge when there is none
+		if (d == a || d == b || d == c) {
+			return false;
+		}
+		return Predicates.incircle(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(),
+				d.x(), d.y()) > 0;
+	}
+
+	/**
+	 * Triangulate sorted vertices from index lo up to hi
+	 * 
+	 * @return counterclockwise convex hull edge out of the leftmost vertex
+	 *         and clockwise convex hull edge out of the rightmost vertex
+	 */
+	private static Edge[] triangulate(Vertex[] s, int lo, int hi) {
+		int n = hi - lo;
+		if (n == 2) {
+			Edge a = Edge.make(s[lo], s[lo + 1]);
+			return new Edge[] { a, a.sym() };
+		}
+		if (n == 3) {
+			Edge a = Edge.make(s[lo], s[lo + 1]);
+			Edge b = Edge.make(s[lo + 1], s[lo + 2]);
+			Edge.splice(a.sym(), b);
+			if (ccw(s[lo], s[lo + 1], s[lo + 2])) {
+				Edge.connect(b, a);
+				return new Edge[] { a, b.sym() };
+			} else if (ccw(s[lo], s[lo + 2], s[lo + 1])) {
+				Edge c = Edge.connect(b, a);
+				return new Edge[] { c.sym(), c };
+			}
+			// Collinear
+			return new Edge[] { a, b.sym() };
+		}
+		int mid = lo + n / 2;
+		return merge(triangulate(s, lo, mid), triangulate(s, mid, hi));
+	}
+
+	/**
+	 * Merge triangulations of two halves, left is completely left of right
+	 * 
+	 * @param left
+	 *            hull edges of left half
+	 * @param right
+	 *            hull edges of right half
+	 * @return hull edges of the merged triangulation
+	 */
+	private static Edge[] merge(Edge[] left, Edge[] right) {
+		Edge ldo = left[0];
+		Edge ldi = left[1];
+		Edge rdi = right[0];
+		Edge rdo = right[1];
+
+		// Find lower common tangent of the halves
+		while (true) {
+			if (leftOf(rdi.org, ldi)) {
+				ldi = ldi.lnext();
+			} else if (rightOf(ldi.org, rdi)) {
+				rdi = rdi.rprev();
+			} else {
+				break;
+			}
+		}
+
+		// Create first cross edge from rdi.org to ldi.org
+		Edge basel = Edge.connect(rdi.sym(), ldi);
+		if (ldi.org == ldo.org) {
+			ldo = basel.sym();
+		}
+		if (rdi.org == rdo.org) {
+			rdo = basel;
+		}
+
+		// Zip the halves together from bottom to top
+		Edge lcand, rcand, t;
+		boolean lValid, rValid;
+		while (true) {
+			// Delete left edges that fail the circle test
+			lcand = basel.sym().onext;
+			if (rightOf(lcand.dest(), basel)) {
+				while (inCircle(basel.dest(), basel.org, lcand.dest(),
+						lcand.onext.dest())) {
+					t = lcand.onext;
+					Edge.delete(lcand);
+					lcand = t;
+				}
+			}
+			// Delete right edges that fail the circle test
+			rcand = basel.oprev();
+			if (rightOf(rcand.dest(), basel)) {
+				while (inCircle(basel.dest(), basel.org, rcand.dest(),
+						rcand.oprev().dest())) {
+					t = rcand.oprev();
+					Edge.delete(rcand);
+					rcand = t;
+				}
+			}
+			lValid = rightOf(lcand.dest(), basel);
+			rValid = rightOf(rcand.dest(), basel);
+			// Upper common tangent reached
+			if (!lValid && !rValid) {
+				break;
+			}
+			// Connect to the candidate whose circle is empty
+			if (!lValid
+					|| (rValid && inCircle(lcand.dest(), lcand.org,
+							rcand.org, rcand.dest()))) {
+				basel = Edge.connect(rcand, basel.sym());
+			} else {
+				basel = Edge.connect(basel.sym(), lcand.sym());
+			}
+		}
+		return new Edge[] { ldo, rdo };
+	}
+
+	/**
+	 * Task triangulating a range of sorted vertices, splitting it in parallel
+	 * tasks while it is large
+	 */
+	private static class Triangulate extends RecursiveTask<Edge[]> {
+
+		private static final long serialVersionUID = 1L;
+		private final Vertex[] s;
+		private final int lo;
+		private final int hi;
+
+		Triangulate(Vertex[] s, int lo, int hi) {
+			this.s = s;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		protected Edge[] compute() {
+			if (hi - lo <= SEQUENTIAL) {
+				return triangulate(s, lo, hi);
+			}
+			int mid = lo + (hi - lo) / 2;
+			Triangulate left = new Triangulate(s, lo, mid);
+			left.fork();
+			Edge[] right = new Triangulate(s, mid, hi).compute();
+			return merge(left.join(), right);
+		}
+	}
+
+	/**
+	 * Task sorting a range of vertices with a parallel merge sort
+	 */
+	private static class Sort extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final Vertex[] a;
+		private final Vertex[] temp;
+		private final int lo;
+		private final int hi;
+
+		Sort(Vertex[] a, Vertex[] temp, int lo, int hi) {
+			this.a = a;
+			this.temp = temp;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		protected void compute() {
+			if (hi - lo <= SEQUENTIAL) {
+				Arrays.sort(a, lo, hi, ORDER);
+				return;
+			}
+			int mid = lo + (hi - lo) / 2;
+			invokeAll(new Sort(a, temp, lo, mid), new Sort(a, temp, mid, hi));
+			// Merge sorted halves
+			System.arraycopy(a, lo, temp, lo, hi - lo);
+			int i = lo;
+			int j = mid;
+			for (int k = lo; k < hi; k++) {
+				if (j >= hi || (i < mid && ORDER.compare(temp[i], temp[j]) <= 0)) {
+					a[k] = temp[i++];
+				} else {
+					a[k] = temp[j++];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Directed edge of the quad-edge structure. Every edge has four parts:
+	 * two directions of the edge and two directions of its dual.
+	 */
+	private static class Edge {
+
+		Vertex org;
+		Edge rot;
+		Edge onext;
+		// Only set for one direction of each primal edge
+		boolean primary;
+		// Used when creating triangles and edges
+		boolean visited;
+		Triangle left;
+
+		/**
+		 * Create edge from a to b
+		 */
+		static Edge make(Vertex a, Vertex b) {
+			Edge e0 = new Edge();
+			Edge e1 = new Edge();
+			Edge e2 = new Edge();
+			Edge e3 = new Edge();
+			e0.rot = e1;
+			e1.rot = e2;
+			e2.rot = e3;
+			e3.rot = e0;
+			e0.onext = e0;
+			e1.onext = e3;
+			e2.onext = e2;
+			e3.onext = e1;
+			e0.org = a;
+			e2.org = b;
+			e0.primary = true;
+			return e0;
+		}
+
+		/**
+		 * Exchange the rings of a and b
+		 */
+		static void splice(Edge a, Edge b) {
+			Edge alpha = a.onext.rot;
+			Edge beta = b.onext.rot;
+			Edge t1 = b.onext;
+			Edge t2 = a.onext;
+			Edge t3 = beta.onext;
+			Edge t4 = alpha.onext;
+			a.onext = t1;
+			b.onext = t2;
+			alpha.onext = t3;
+			beta.onext = t4;
+		}
+
+		/**
+		 * Create edge from the destination of a to the origin of b
+		 */
+		static Edge connect(Edge a, Edge b) {
+			Edge e = make(a.dest(), b.org);
+			splice(e, a.lnext());
+			splice(e.sym(), b);
+			return e;
+		}
+
+		/**
+		 * Disconnect edge e from the structure
+		 */
+		static void delete(Edge e) {
+			splice(e, e.oprev());
+			splice(e.sym(), e.sym().oprev());
+		}
+
+		Edge sym() {
+			return rot.rot;
+		}
+
+		Vertex dest() {
+			return rot.rot.org;
+		}
+
+		Edge lnext() {
+			return rot.rot.rot.onext.rot;
+		}
+
+		Edge oprev() {
+			return rot.onext.rot;
+		}
+
+		Edge rprev() {
+			return rot.rot.onext;
+		}
+	}
+}
@@ -16,14 +16,20 @@
 package nl.joeriadmiraal.hdr;
 
 import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Frame;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.geom.Ellipse2D;
 import java.util.List;
 import java.util.Map;
 
+import javax.swing.JFrame;
 import javax.swing.JPanel;
 
 /**
@@ -39,7 +45,7 @@ public class Drawing extends JPanel {
 	private Map<Integer, QuadEdge> lines;
 	private boolean hdr = false;
 	private double[][] theoretical;
-	private Rectangle dimensions;
+	private Bounds dimensions;
 	private double scale, offsetX, offsetY;
 	private Rectangle bounds;
 
@@ -56,6 +62,40 @@ public class Drawing extends JPanel {
 		this.lines = lines;
 	}
 
+	/**
+	 * Show drawing of the Voronoi cells of a triangulation in a window that
+	 * fills the screen
+	 * 
+	 * @param title
+	 *            title of the window
+	 * @param triangulation
+	 *            triangulation with Voronoi data
+	 * @return drawing in the window
+	 */
+	public static Drawing show(String title, Triangulation triangulation) {
+		// Create frame for printing results
+		final JFrame frame = new JFrame(title);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setBackground(Color.white);
+		Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+		frame.setSize(screenSize.width, screenSize.height - 40);
+		frame.setExtendedState(Frame.MAXIMIZED_BOTH);
+		frame.setVisible(true);
+
+		// Draw results
+		final Drawing drawing = new Drawing(triangulation.getVertices(),
+				triangulation.getEdges());
+		drawing.setDimensions(triangulation.getDimensions());
+		frame.add(drawing);
+		frame.addComponentListener(new ComponentAdapter() {
+			public void componentResized(ComponentEvent e) {
+				drawing.setBounds(frame.getBounds());
+				drawing.repaint();
+			}
+		});
+		return drawing;
+	}
+
 	/**
 	 * Set whether to draw the HDR or not
 	 * 
@@ -82,7 +122,7 @@ public class Drawing extends JPanel {
 	 * @param dimensions
 	 *            dimensions of observations
 	 */
-	public void setDimensions(Rectangle dimensions) {
+	public void setDimensions(Bounds dimensions) {
 		this.dimensions = dimensions;
 	}
 
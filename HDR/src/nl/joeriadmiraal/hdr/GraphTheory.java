@@ -15,31 +15,87 @@
 
 package nl.joeriadmiraal.hdr;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+
+import nl.joeriadmiraal.hdr.Metrics.Counter;
 
 public class GraphTheory {
 
-	Map<Integer, Vertex> verticesMap = new HashMap<Integer, Vertex>();
+	// Fraction of all observations by which repair lets the size of the HDR
+	// drift from the size of the last pass, before the pass is done again
+	public static final double DRIFT = 0.005;
+
 	List<Vertex> verticesSet;
+	// Neighbours of each vertex in cyclic order, by id
+	NeighbourRings rings;
+	// Whether each vertex is in the HDR, by id
+	boolean[] inHDR;
+	// Position of each vertex in the sorted list, by id
+	int[] ranks;
+	// Step in which each vertex was removed (top-down) or added (bottom-up)
+	// in the last pass, by id
+	int[] steps;
+	// Number of observations removed or added up to and including each step
+	int[] cumulative;
+	int nrSteps;
+	boolean removed;
 	double area;
+	// Vertices by id
+	Vertex[] byID;
+	// Largest area in and smallest area outside the border of the HDR of the
+	// last pass, and the number of observations at that time. The HDR is
+	// repaired to the density of these levels.
+	double upper = Double.NaN;
+	double lower;
+	int levelObservations;
+	// Number of observations in the HDR of the last pass
+	int levelInHDR;
+	// Whether the HDR must stay connected without holes (not for simple)
+	boolean connected;
+	// Calls of checkSwitches since the last report to the metrics
+	long nrSwitchChecks;
 
 	/**
-	 * Create graph of vertices with Voronoi data
+	 * Create graph of vertices with Voronoi data. Neighbours of every vertex
+	 * are sorted on angle once.
 	 * 
 	 * @param unsortedVertices
 	 *            all vertices/cells in the Voronoi diagram
 	 */
 	public GraphTheory(List<Vertex> unsortedVertices) {
-		// Put vertices in map, to find neighbours quickly and to (new!) list
-		for (Vertex v : unsortedVertices) {
-			verticesMap.put(v.getID(), v);
-		}
+		this(unsortedVertices, new NeighbourRings(unsortedVertices));
+	}
+
+	/**
+	 * Create graph of the vertices of a triangulation with Voronoi data, using
+	 * the cyclic order of neighbours in the triangulation
+	 * 
+	 * @param triangulation
+	 *            triangulation with Voronoi data
+	 */
+	public GraphTheory(Triangulation triangulation) {
+		this(triangulation.getVertices(), triangulation.getNeighbourRings());
+	}
+
+	/**
+	 * Create graph of vertices with Voronoi data
+	 * 
+	 * @param unsortedVertices
+	 *            all vertices/cells in the Voronoi diagram
+	 * @param rings
+	 *            neighbours of the vertices in cyclic order
+	 */
+	public GraphTheory(List<Vertex> unsortedVertices, NeighbourRings rings) {
 		verticesSet = unsortedVertices;
+		this.rings = rings;
+		inHDR = new boolean[rings.getNrIDs()];
+		ranks = new int[rings.getNrIDs()];
+		steps = new int[rings.getNrIDs()];
+		cumulative = new int[unsortedVertices.size()];
+		byID = new Vertex[rings.getNrIDs()];
 	}
 
 	/**
@@ -50,189 +106,540 @@ public class GraphTheory {
 	 *            number of nodes to remove
 	 */
 	public void simple(int nrToRemove) {
+		ensureCapacity();
+		connected = false;
+		// Sort vertices, so the largest cells are removed first whatever
+		// order an earlier pass left
+		sortVertices(true);
 		Vertex temp;
 		// Loop through all vertices
 		for (int i = 0; i < verticesSet.size(); i++) {
 			temp = verticesSet.get(i);
 			// If there are more vertices to remove, remove cell
 			if (temp.getNrDuplicates() < nrToRemove) {
-				temp.setInHDR(false);
+				setInHDR(temp, false);
 				nrToRemove -= temp.getNrDuplicates() + 1;
 			} else {
-				temp.setInHDR(true);
+				setInHDR(temp, true);
 			}
 		}
+		computeLevels();
 	}
 
 	/**
-	 * Calculate the HDR containing 1-alpha vertices with top-down approach
+	 * Calculate the HDR containing 1-alpha vertices with top-down approach.
+	 * Removable cells are kept in a priority queue on area, only neighbours of
+	 * a removed cell can become removable.
 	 * 
 	 * @param alpha
 	 *            number of vertices to be deleted
 	 */
 	public void topDown(int nrToRemove) {
+		ensureCapacity();
 		// Sort vertices
 		sortVertices(true);
 
 		// Begin with all nodes in the HDR
 		for (Vertex v : verticesSet) {
-			v.setInHDR(true);
+			setInHDR(v, true);
+		}
+		startSteps(true);
+
+		// Only bound cells can be removed from the complete HDR
+		IntHeap candidates = new IntHeap(verticesSet.size());
+		boolean[] queued = new boolean[verticesSet.size()];
+		for (int i = 0; i < verticesSet.size(); i++) {
+			if (verticesSet.get(i).isBound()) {
+				candidates.add(i);
+				queued[i] = true;
+			}
 		}
 
 		// Remove cells
 		int cellNr;
-		Vertex check, toRemove;
-		while (nrToRemove > 0) {
-			toRemove = null;
-			cellNr = 0;
-			// Find boundary cell with biggest area
-			while (toRemove == null) {
-				check = verticesSet.get(cellNr);
-				// Check if selected vertex is in hdr and does not exceed
-				// nrToRemove
-				if (check.isInHDR() && check.getNrDuplicates() < nrToRemove) {
-					if (check.isBound()) {
-						// If vertex is bound, it is always ok to remove
-						toRemove = check;
-					} else if (checkSwitches(check)) {
-						// If vertex has 2 switches, it is ok to remove
-						toRemove = check;
-					}
-				}
-				cellNr++;
+		Vertex check;
+		while (nrToRemove > 0 && !candidates.isEmpty()) {
+			// Get boundary cell with biggest area
+			cellNr = candidates.poll();
+			queued[cellNr] = false;
+			check = verticesSet.get(cellNr);
+			// Check if selected vertex is still in hdr, does not exceed
+			// nrToRemove and is bound or has 2 switches
+			if (!check.isInHDR() || check.getNrDuplicates() >= nrToRemove
+					|| !(check.isBound() || checkSwitches(check))) {
+				continue;
 			}
 			// Remove this cell
-			toRemove.setInHDR(false);
-			nrToRemove -= toRemove.getNrDuplicates() + 1;
+			setInHDR(check, false);
+			nrToRemove -= check.getNrDuplicates() + 1;
+			addStep(check);
+			queueNeighbours(check, true, candidates, queued);
 		}
+		computeLevels();
 	}
 
 	/**
-	 * Compute the HDR with the bottom-up approach with nrToAdd observations
+	 * Compute the HDR with the bottom-up approach with nrToAdd observations.
+	 * Only cells next to the HDR can be added, these are kept in a priority
+	 * queue on area.
 	 * 
 	 * @param nrToAdd
 	 *            the number of observations to be included in the HDR
 	 */
 	public void bottomUp(int nrToAdd) {
+		ensureCapacity();
 		// Sort vertices
 		sortVertices(false);
 
 		// Set all nodes not in HDR
 		for (Vertex v : verticesSet) {
-			v.setInHDR(false);
+			setInHDR(v, false);
 			v.setBound(false);
 		}
+		startSteps(false);
 
+		IntHeap candidates = new IntHeap(verticesSet.size());
+		boolean[] queued = new boolean[verticesSet.size()];
 		int cellNr;
-		Vertex check, toAdd;
+		Vertex check;
 
 		// First add smallest cell to HDR
-		toAdd = verticesSet.get(0);
-		toAdd.setInHDR(true);
-		nrToAdd -= toAdd.getNrDuplicates() + 1;
+		check = verticesSet.get(0);
+		setInHDR(check, true);
+		nrToAdd -= check.getNrDuplicates() + 1;
+		addStep(check);
+		queueNeighbours(check, false, candidates, queued);
 
 		// Find node with lowest value to add to HDR
-		while (nrToAdd > 0) {
-			toAdd = null;
-			cellNr = 0;
-			while (toAdd == null) {
-				check = verticesSet.get(cellNr);
-				// Check if cell is not yet in HDR, has 2 switches and does not
-				// exceed nrToAdd
-				if (!check.isInHDR() && check.getNrDuplicates() < nrToAdd
-						&& checkSwitches(check)) {
-					toAdd = check;
-				} else {
-					cellNr++;
-				}
+		while (nrToAdd > 0 && !candidates.isEmpty()) {
+			cellNr = candidates.poll();
+			queued[cellNr] = false;
+			check = verticesSet.get(cellNr);
+			// Check if cell is not yet in HDR, has 2 switches and does not
+			// exceed nrToAdd
+			if (check.isInHDR() || check.getNrDuplicates() >= nrToAdd
+					|| !checkSwitches(check)) {
+				continue;
 			}
 			// Add this node to the HDR
-			toAdd.setInHDR(true);
-			nrToAdd -= toAdd.getNrDuplicates() + 1;
+			setInHDR(check, true);
+			nrToAdd -= check.getNrDuplicates() + 1;
+			addStep(check);
+			queueNeighbours(check, false, candidates, queued);
 		}
+		computeLevels();
 	}
 
 	/**
-	 * Get the amount of switches this node has. Switch is when a to connected
-	 * neighbours are not both inside or outside HDR. When there are 2 switches,
-	 * removal does not create a hole and HDR remains connected
+	 * Compute the order in which top-down removes all removable cells. The HDR
+	 * of any size can then be selected with setLevel.
+	 */
+	public void topDownOrder() {
+		topDown(getNrObservations());
+	}
+
+	/**
+	 * Compute the order in which bottom-up adds all cells. The HDR of any size
+	 * can then be selected with setLevel.
+	 */
+	public void bottomUpOrder() {
+		bottomUp(getNrObservations());
+	}
+
+	/**
+	 * Select the HDR with at least nrInHDR observations (top-down) or at most
+	 * nrInHDR observations (bottom-up) from the order of the last top-down or
+	 * bottom-up pass. Without duplicates this is the same HDR as a pass for
+	 * this size. HDRs of different sizes are nested.
 	 * 
-	 * @param toCheck
-	 *            node to be added or removed
-	 * @return true if number of switches exceeds two.
+	 * @param nrInHDR
+	 *            number of observations in the HDR
 	 */
-	private boolean checkSwitches(Vertex toCheck) {
-		// Get clockwise sorted neighbours
-		List<Vertex> sortedNeighbours = getSortedNeighbours(toCheck);
-		int switches = 0;
-		// Look how many switches there are
-		for (int i = 1; i < sortedNeighbours.size(); i++) {
-			// A switch is when two adjacent neighbours are not in the same
-			// state (in or out hdr)
-			if ((!sortedNeighbours.get(i).isInHDR() && sortedNeighbours.get(
-					i - 1).isInHDR())
-					|| (sortedNeighbours.get(i).isInHDR() && !sortedNeighbours
-							.get(i - 1).isInHDR())) {
-				switches += 1;
-			}
+	public void setLevel(int nrInHDR) {
+		if (nrSteps == 0) {
+			throw new IllegalStateException("No order computed");
 		}
-		// Note that loop does not include check between first and last vertex.
-		// Not necessairy as number of switches is always even. So when number
-		// of switches is 1 or 2, removal does not result in holes or
-		// non-connected HDR.
-		if (switches > 2 || switches < 1) {
-			return false;
+		// Find number of steps taken for this level
+		int taken;
+		if (removed) {
+			taken = nrStepsWithin(getNrObservations() - nrInHDR);
+		} else {
+			taken = Math.max(1, nrStepsWithin(nrInHDR));
+		}
+		int step;
+		for (Vertex v : verticesSet) {
+			step = steps[v.getID()];
+			setInHDR(v, removed == (step >= taken));
 		}
-		return true;
+		computeLevels();
 	}
 
 	/**
-	 * Get clockwise sorted neighbours of toCheck
+	 * Get the step in which a vertex was removed or added in the last top-down
+	 * or bottom-up pass
 	 * 
-	 * @param toCheck
-	 *            node to get sorted neighbours of
-	 * @return clockwise sorted neighbours of toCheck
+	 * @param v
+	 *            vertex
+	 * @return step of v, or Integer.MAX_VALUE if v was not removed or added
 	 */
-	private List<Vertex> getSortedNeighbours(Vertex toCheck) {
-		// Get neighbours
-		List<Vertex> neighbours = new ArrayList<Vertex>();
-		for (int neighbour : toCheck.getNeighbours()) {
-			neighbours.add(verticesMap.get(neighbour));
+	public int getStep(Vertex v) {
+		return steps[v.getID()];
+	}
+
+	/**
+	 * Get number of steps of the last top-down or bottom-up pass
+	 * 
+	 * @return number of removed or added cells
+	 */
+	public int getNrSteps() {
+		return nrSteps;
+	}
+
+	/**
+	 * Repair the HDR after the cells of some vertices changed, for example
+	 * because observations were inserted or removed. The densities at the
+	 * border of the HDR of the last pass are kept, so the area levels shrink
+	 * as the number of observations grows. A cell in the HDR with an area
+	 * above the largest area in the border is removed if it is bound or has 2
+	 * switches, a cell outside with an area below the smallest area outside
+	 * the border is added if it has 2 switches. After the simple method
+	 * switches are not checked. Only changed cells and neighbours of cells
+	 * that changed state are checked, so the cost depends on the changed
+	 * region and not on the number of vertices.
+	 * <p>
+	 * With kept levels the fraction of observations in the HDR drifts from
+	 * the fraction of the last pass. When it drifts more than DRIFT of all
+	 * observations, the last pass is done again for that fraction, which also
+	 * anchors the levels to the current observations. The order of the last
+	 * pass can not be used by setLevel anymore.
+	 * 
+	 * @param changed
+	 *            vertices of which the cell changed, including new vertices
+	 *            and excluding removed vertices
+	 * @param nrObservations
+	 *            number of observations, including duplicates
+	 */
+	public void repair(List<Vertex> changed, int nrObservations) {
+		if (Double.isNaN(upper)) {
+			throw new IllegalStateException("No HDR computed");
 		}
-		// Get a vertex of the cell for comparison
-		final double mx = toCheck.x();
-		final double my = toCheck.y();
-		// Sort vertices, using relative angle to centre
-		Collections.sort(neighbours, new Comparator<Vertex>() {
-			public int compare(Vertex a, Vertex b) {
-				// This function sorts vertices in clockwise order, starting at
-				// 12 o'clock
-				// Check if one part is in left part and other in right part (of
-				// clock)
-				if (a.x() >= mx && b.x() < mx) {
-					return -1;
-				}
-				if (a.x() <= mx && b.x() > mx) {
-					return 1;
-				}
-				if (a.x() == mx && b.x() == mx) {
-					if (a.y() > b.y()) {
-						return -1;
-					} else {
-						return 1;
-					}
+		ensureCapacity();
+		double scale = (double) levelObservations / nrObservations;
+		double upper = this.upper * scale;
+		// A cell that is added can not be removed again
+		double lower = Math.min(this.lower, this.upper) * scale;
+		nrSteps = 0;
+		// A new observation lies in the old cell of its nearest neighbour, so
+		// it starts in the state of that neighbour
+		IntSet pending = new IntSet();
+		for (Vertex v : changed) {
+			if (byID[v.getID()] != v) {
+				setInHDR(v, nearestState(v, lower));
+			}
+			pending.add(v.getID());
+		}
+		int id;
+		Vertex check;
+		boolean change;
+		while (!pending.isEmpty()) {
+			id = pending.get(pending.size() - 1);
+			pending.remove(id);
+			check = byID[id];
+			// Areas do not change here, so every cell changes state at most
+			// once
+			if (inHDR[id]) {
+				change = check.getArea() > upper
+						&& (!connected || check.isBound() || checkSwitches(check));
+			} else {
+				change = check.getArea() < lower
+						&& (!connected || checkSwitches(check));
+			}
+			if (change) {
+				setInHDR(check, !inHDR[id]);
+				for (int i = rings.getStart(id); i < rings.getEnd(id); i++) {
+					pending.add(rings.get(i));
 				}
-				// Otherwise, compute the cross product of vectors
-				double det = (a.x() - mx) * (b.y() - my) - (b.x() - mx)
-						* (a.y() - my);
-				if (det > 0) {
-					return 1;
-				} else {
-					return -1;
+			}
+		}
+
+		// Do the last pass again if the HDR drifted too far from its size
+		int nrInHDR = 0;
+		for (Vertex v : verticesSet) {
+			if (v.isInHDR()) {
+				nrInHDR += v.getNrDuplicates() + 1;
+			}
+		}
+		int target = (int) Math.round((double) levelInHDR * nrObservations
+				/ levelObservations);
+		if (Math.abs(nrInHDR - target) > DRIFT * nrObservations) {
+			if (!connected) {
+				simple(nrObservations - target);
+			} else if (removed) {
+				topDown(nrObservations - target);
+			} else {
+				bottomUp(target);
+			}
+			nrSteps = 0;
+		}
+	}
+
+	/**
+	 * Restore the HDR of a snapshot from the state of the vertices, so it can
+	 * be repaired. The order of the last pass is not restored.
+	 * 
+	 * @param area
+	 *            area of the HDR
+	 * @param upper
+	 *            largest area in the border of the HDR
+	 * @param lower
+	 *            smallest area outside the border of the HDR
+	 * @param levelObservations
+	 *            number of observations when the levels were computed
+	 * @param connected
+	 *            whether the HDR must stay connected without holes
+	 * @param removed
+	 *            true if the HDR was computed top-down, false if bottom-up
+	 */
+	void restore(double area, double upper, double lower,
+			int levelObservations, boolean connected, boolean removed) {
+		ensureCapacity();
+		levelInHDR = 0;
+		for (Vertex v : verticesSet) {
+			setInHDR(v, v.isInHDR());
+			if (v.isInHDR()) {
+				levelInHDR += v.getNrDuplicates() + 1;
+			}
+		}
+		this.area = area;
+		this.upper = upper;
+		this.lower = lower;
+		this.levelObservations = levelObservations;
+		this.connected = connected;
+		this.removed = removed;
+		nrSteps = 0;
+	}
+
+	/**
+	 * Get the state of the nearest neighbour of a new vertex that is already
+	 * in the graph
+	 * 
+	 * @param v
+	 *            new vertex
+	 * @param lower
+	 *            area below which cells are added
+	 * @return true if the nearest neighbour is in the HDR, or if there is no
+	 *         such neighbour and the area of v is below lower
+	 */
+	private boolean nearestState(Vertex v, double lower) {
+		int nearest = -1;
+		double best = Double.POSITIVE_INFINITY;
+		double dx, dy;
+		Vertex other;
+		for (int i = rings.getStart(v.getID()); i < rings.getEnd(v.getID()); i++) {
+			other = byID[rings.get(i)];
+			if (other != null) {
+				dx = other.x() - v.x();
+				dy = other.y() - v.y();
+				if (dx * dx + dy * dy < best) {
+					best = dx * dx + dy * dy;
+					nearest = other.getID();
 				}
 			}
-		});
-		return neighbours;
+		}
+		return nearest >= 0 ? inHDR[nearest] : v.getArea() < lower;
+	}
+
+	/**
+	 * Store the largest area in the HDR and the smallest area outside, of
+	 * cells at the border of the HDR if it must stay connected
+	 */
+	private void computeLevels() {
+		upper = Double.NEGATIVE_INFINITY;
+		lower = Double.POSITIVE_INFINITY;
+		levelObservations = 0;
+		levelInHDR = 0;
+		boolean border;
+		for (Vertex v : verticesSet) {
+			levelObservations += v.getNrDuplicates() + 1;
+			if (v.isInHDR()) {
+				levelInHDR += v.getNrDuplicates() + 1;
+			}
+			border = !connected || (v.isInHDR() && v.isBound());
+			for (int i = rings.getStart(v.getID()); !border
+					&& i < rings.getEnd(v.getID()); i++) {
+				border = inHDR[rings.get(i)] != v.isInHDR();
+			}
+			if (!border) {
+				continue;
+			}
+			if (v.isInHDR()) {
+				upper = Math.max(upper, v.getArea());
+			} else {
+				lower = Math.min(lower, v.getArea());
+			}
+		}
+	}
+
+	/**
+	 * Make room for vertices that were inserted after the graph was created
+	 */
+	private void ensureCapacity() {
+		int nrIDs = rings.getNrIDs();
+		if (nrIDs > inHDR.length) {
+			int length = Math.max(nrIDs, 2 * inHDR.length);
+			inHDR = Arrays.copyOf(inHDR, length);
+			ranks = Arrays.copyOf(ranks, length);
+			steps = Arrays.copyOf(steps, length);
+			byID = Arrays.copyOf(byID, length);
+		}
+		if (verticesSet.size() > cumulative.length) {
+			cumulative = Arrays.copyOf(cumulative,
+					Math.max(verticesSet.size(), 2 * cumulative.length));
+		}
+	}
+
+	/**
+	 * Start recording the steps of a pass
+	 * 
+	 * @param removed
+	 *            true if cells are removed, false if cells are added
+	 */
+	private void startSteps(boolean removed) {
+		this.removed = removed;
+		connected = true;
+		nrSteps = 0;
+		Arrays.fill(steps, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Record removal or addition of a cell
+	 * 
+	 * @param v
+	 *            removed or added cell
+	 */
+	private void addStep(Vertex v) {
+		steps[v.getID()] = nrSteps;
+		cumulative[nrSteps] = v.getNrDuplicates() + 1
+				+ (nrSteps == 0 ? 0 : cumulative[nrSteps - 1]);
+		nrSteps++;
+	}
+
+	/**
+	 * Get the number of steps in which at most nr observations are removed or
+	 * added
+	 * 
+	 * @param nr
+	 *            number of observations
+	 * @return number of steps
+	 */
+	private int nrStepsWithin(int nr) {
+		// Binary search for the first step exceeding nr
+		int low = 0;
+		int high = nrSteps;
+		int mid;
+		while (low < high) {
+			mid = (low + high) >>> 1;
+			if (cumulative[mid] <= nr) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Get number of observations, including duplicates
+	 * 
+	 * @return number of observations
+	 */
+	private int getNrObservations() {
+		int nr = 0;
+		for (Vertex v : verticesSet) {
+			nr += v.getNrDuplicates() + 1;
+		}
+		return nr;
+	}
+
+	/**
+	 * Add neighbours of a cell that just changed state to the queue of
+	 * candidates, they are checked when they are taken from the queue
+	 * 
+	 * @param changed
+	 *            cell that was added to or removed from the HDR
+	 * @param inHDR
+	 *            state of neighbours to queue
+	 * @param candidates
+	 *            queue of positions in the sorted list of cells
+	 * @param queued
+	 *            true for positions that are in the queue
+	 */
+	private void queueNeighbours(Vertex changed, boolean inHDR,
+			IntHeap candidates, boolean[] queued) {
+		int id, cellNr;
+		for (int i = rings.getStart(changed.getID()); i < rings.getEnd(changed
+				.getID()); i++) {
+			id = rings.get(i);
+			cellNr = ranks[id];
+			if (this.inHDR[id] == inHDR && !queued[cellNr]) {
+				candidates.add(cellNr);
+				queued[cellNr] = true;
+			}
+		}
+	}
+
+	/**
+	 * Give number of switch checks since the last report to the metrics
+	 */
+	void reportCounts() {
+		HdrMetrics.count(Counter.SWITCH_CHECKS, nrSwitchChecks);
+		nrSwitchChecks = 0;
+	}
+
+	/**
+	 * Set whether a vertex is in the HDR
+	 * 
+	 * @param v
+	 *            vertex
+	 * @param inHDR
+	 *            true if v is in the HDR
+	 */
+	private void setInHDR(Vertex v, boolean inHDR) {
+		v.setInHDR(inHDR);
+		this.inHDR[v.getID()] = inHDR;
+		byID[v.getID()] = v;
+	}
+
+	/**
+	 * Get the amount of switches this node has. Switch is when a to connected
+	 * neighbours are not both inside or outside HDR. When there are 2 switches,
+	 * removal does not create a hole and HDR remains connected
+	 * 
+	 * @param toCheck
+	 *            node to be added or removed
+	 * @return true if number of switches is two.
+	 */
+	private boolean checkSwitches(Vertex toCheck) {
+		nrSwitchChecks++;
+		int start = rings.getStart(toCheck.getID());
+		int end = rings.getEnd(toCheck.getID());
+		if (start == end) {
+			return false;
+		}
+		// Walk around the neighbours, including the step from the last back to
+		// the first neighbour. A switch is when two adjacent neighbours are
+		// not in the same state (in or out hdr)
+		int switches = 0;
+		boolean previous = inHDR[rings.get(end - 1)];
+		boolean current;
+		for (int i = start; i < end; i++) {
+			current = inHDR[rings.get(i)];
+			if (current != previous) {
+				switches++;
+			}
+			previous = current;
+		}
+		return switches == 2;
 	}
 
 	/**
@@ -252,7 +659,8 @@ public class GraphTheory {
 	}
 
 	/**
-	 * Sort a list of vertices on Voronoi area
+	 * Sort a list of vertices on Voronoi area and store the position of every
+	 * vertex in ranks
 	 * 
 	 * @param highToLow
 	 *            true if sort from high to low, low to high otherwise
@@ -277,5 +685,9 @@ public class GraphTheory {
 				}
 			});
 		}
+		// Store position of each vertex by id
+		for (int i = 0; i < verticesSet.size(); i++) {
+			ranks[verticesSet.get(i).getID()] = i;
+		}
 	}
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.IOException;
+import nl.joeriadmiraal.hdr.Metrics.Phase;
+
+/**
+ * Computes HDRs of observations without any user interface. The Delaunay
+ * triangulation and Voronoi cells are created once, after which HDRs for any
+ * alpha and method can be computed. Observations can only be inserted and
+ * removed, points checked against the last HDR and snapshots saved with a
+ * MeshHdrEngine.
+ * 
+ * @author Joeri
+ * 
+ */
+public class HdrEngine {
+
+	private Triangulation triangulation;
+	GraphTheory graph;
+	int nrObservations;
+	// Alpha and method of the last computation, null if there is none
+	double lastAlpha;
+	Method lastMethod;
+
+	/**
+	 * Create engine of a snapshot, the Voronoi data is not calculated again
+	 * 
+	 * @param triangulation
+	 *            triangulation with Voronoi data
+	 * @param graph
+	 *            graph with the HDR of the last computation, or null
+	 * @param nrObservations
+	 *            number of observations, including duplicates
+	 * @param alpha
+	 *            alpha of the last computation
+	 * @param method
+	 *            method of the last computation, or null
+	 */
+	HdrEngine(Triangulation triangulation, GraphTheory graph,
+			int nrObservations, double alpha, Method method) {
+		this.triangulation = triangulation;
+		this.graph = graph;
+		this.nrObservations = nrObservations;
+		lastAlpha = alpha;
+		lastMethod = method;
+	}
+
+	/**
+	 * Create engine for the observations of a triangulation
+	 * 
+	 * @param triangulation
+	 *            Delaunay triangulation of the observations
+	 */
+	public HdrEngine(Triangulation triangulation) {
+		this.triangulation = triangulation;
+		long start = HdrMetrics.start();
+		triangulation.calcVoronoi();
+		HdrMetrics.stop(Phase.VORONOI, start);
+		for (Vertex v : triangulation.getVertices()) {
+			nrObservations += v.getNrDuplicates() + 1;
+		}
+	}
+
+	/**
+	 * Compute HDR excluding alpha of the observations
+	 * 
+	 * @param alpha
+	 *            percentage of observations to be excluded from the hdr
+	 * @param method
+	 *            graph method to use
+	 * @return areas and vertices of the HDR
+	 */
+	public HdrResult compute(double alpha, Method method) {
+		long start = HdrMetrics.start();
+		GraphTheory graph = getGraph();
+		switch (method) {
+		case SIMPLE:
+			graph.simple((int) (alpha * nrObservations));
+			break;
+		case TOP_DOWN:
+			graph.topDown((int) (alpha * nrObservations));
+			break;
+		case BOTTOM_UP:
+			graph.bottomUp((int) (nrObservations * (1.0 - alpha)));
+			break;
+		}
+		HdrMetrics.stop(Phase.PEELING, start);
+		graph.reportCounts();
+		return result(alpha, method);
+	}
+
+	/**
+	 * Compute nested HDRs for several alphas from one top-down or bottom-up
+	 * pass. The simple method computes every HDR separately.
+	 * 
+	 * @param alphas
+	 *            percentages of observations to be excluded from the hdrs
+	 * @param method
+	 *            graph method to use
+	 * @return areas and vertices of the HDRs, in the order of alphas
+	 */
+	public HdrResult[] compute(double[] alphas, Method method) {
+		HdrResult[] results = new HdrResult[alphas.length];
+		if (method == Method.SIMPLE) {
+			for (int i = 0; i < alphas.length; i++) {
+				results[i] = compute(alphas[i], method);
+			}
+			return results;
+		}
+		long start = HdrMetrics.start();
+		GraphTheory graph = getGraph();
+		if (method == Method.TOP_DOWN) {
+			graph.topDownOrder();
+		} else {
+			graph.bottomUpOrder();
+		}
+		HdrMetrics.stop(Phase.PEELING, start);
+		graph.reportCounts();
+		for (int i = 0; i < alphas.length; i++) {
+			if (method == Method.TOP_DOWN) {
+				graph.setLevel(nrObservations
+						- (int) (alphas[i] * nrObservations));
+			} else {
+				graph.setLevel((int) (nrObservations * (1.0 - alphas[i])));
+			}
+			results[i] = result(alphas[i], method);
+		}
+		return results;
+	}
+
+	/**
+	 * Get the triangulation, with Voronoi data and the HDR of the last
+	 * computation
+	 * 
+	 * @return triangulation
+	 */
+	public Triangulation getTriangulation() {
+		return triangulation;
+	}
+
+	/**
+	 * Get number of observations, including duplicates
+	 * 
+	 * @return number of observations
+	 */
+	public int getNrObservations() {
+		return nrObservations;
+	}
+
+	/**
+	 * Get graph of the Voronoi cells, created when first needed
+	 * 
+	 * @return graph
+	 */
+	GraphTheory getGraph() {
+		if (graph == null) {
+			graph = new GraphTheory(triangulation);
+		}
+		return graph;
+	}
+
+	/**
+	 * Create result from the current HDR of the graph
+	 * 
+	 * @param alpha
+	 *            percentage of observations excluded from the hdr
+	 * @param method
+	 *            graph method used
+	 * @return areas and vertices of the HDR
+	 */
+	HdrResult result(double alpha, Method method) {
+		lastAlpha = alpha;
+		lastMethod = method;
+		boolean[] inHDR = new boolean[NeighbourRings.nrIDs(triangulation
+				.getVertices())];
+		int nrInHDR = 0;
+		for (Vertex v : triangulation.getVertices()) {
+			if (v.isInHDR()) {
+				inHDR[v.getID()] = true;
+				nrInHDR += v.getNrDuplicates() + 1;
+			}
+		}
+		return new HdrResult(alpha, method, graph.getArea(),
+				triangulation.getArea(), nrInHDR, inHDR);
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import nl.joeriadmiraal.hdr.Metrics.Counter;
+import nl.joeriadmiraal.hdr.Metrics.Phase;
+
+/**
+ * Metrics used by all computations. Counters are kept in fields or local
+ * variables and given to the metrics once per phase, and without metrics the
+ * clock is not read, so measuring costs nothing when it is off.
+ * 
+ * @author Joeri
+ * 
+ */
+public final class HdrMetrics {
+
+	private static volatile Metrics metrics = Metrics.NONE;
+	private static volatile boolean enabled = false;
+
+	private HdrMetrics() {
+	}
+
+	/**
+	 * Set metrics used by all computations
+	 * 
+	 * @param metrics
+	 *            metrics, null or Metrics.NONE to stop measuring
+	 */
+	public static void set(Metrics metrics) {
+		HdrMetrics.metrics = metrics == null ? Metrics.NONE : metrics;
+		enabled = HdrMetrics.metrics != Metrics.NONE;
+	}
+
+	/**
+	 * Get metrics used by all computations
+	 * 
+	 * @return metrics, Metrics.NONE if nothing is measured
+	 */
+	public static Metrics get() {
+		return metrics;
+	}
+
+	/**
+	 * Start timing a phase
+	 * 
+	 * @return start time in nanoseconds, 0 if nothing is measured
+	 */
+	static long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Stop timing a phase
+	 * 
+	 * @param phase
+	 *            phase
+	 * @param start
+	 *            start time returned by start
+	 */
+	static void stop(Phase phase, long start) {
+		if (enabled) {
+			metrics.time(phase, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Add to a counter
+	 * 
+	 * @param counter
+	 *            counter
+	 * @param amount
+	 *            amount to add
+	 */
+	static void count(Counter counter, long amount) {
+		if (enabled && amount != 0) {
+			metrics.count(counter, amount);
+		}
+	}
+}
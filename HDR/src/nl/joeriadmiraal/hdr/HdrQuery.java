@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks whether points lie in the HDR. A point lies in the Voronoi cell of
+ * its nearest observation, which is found by walking through the mesh from
+ * the nearest observation of the previous point, and
+ * is in the HDR if that cell is. The state of the cells is copied when the
+ * query is created, so a new query is needed after the HDR or triangulation
+ * changed.
+ * 
+ * @author Joeri
+ * 
+ */
+public class HdrQuery {
+
+	// Number of bits of the grid on which batches are ordered
+	private static final int ORDER_BITS = 8;
+
+	private final MeshTriangulation triangulation;
+	private final TriangleMesh mesh;
+	// State of the cell of every vertex of the mesh
+	private final boolean[] inHDR;
+	// Vertex to start the next walk from
+	private int last = -1;
+
+	/**
+	 * Create query for the current HDR of a triangulation
+	 * 
+	 * @param triangulation
+	 *            triangulation with vertices in or out of the HDR
+	 */
+	public HdrQuery(MeshTriangulation triangulation) {
+		this.triangulation = triangulation;
+		mesh = triangulation.getMesh();
+		inHDR = new boolean[mesh.getNrVertices()];
+		Vertex v;
+		for (int p = TriangleMesh.SUPER; p < inHDR.length; p++) {
+			v = triangulation.vertex(p);
+			if (v != null) {
+				inHDR[p] = v.isInHDR();
+				if (last < 0) {
+					last = p;
+				}
+			}
+		}
+		if (last < 0) {
+			throw new IllegalArgumentException("Triangulation has no vertices");
+		}
+	}
+
+	/**
+	 * Check whether a point lies in the HDR. Starts walking at the nearest
+	 * vertex of the last point, so this method is not thread safe.
+	 * 
+	 * @param x
+	 *            x-coordinate of point
+	 * @param y
+	 *            y-coordinate of point
+	 * @return true if the cell containing the point is in the HDR
+	 */
+	public boolean contains(double x, double y) {
+		last = mesh.nearest(x, y, last);
+		return inHDR[last];
+	}
+
+	/**
+	 * Get the observation of which the Voronoi cell contains a point, like
+	 * contains
+	 * 
+	 * @param x
+	 *            x-coordinate of point
+	 * @param y
+	 *            y-coordinate of point
+	 * @return nearest vertex
+	 */
+	public Vertex nearest(double x, double y) {
+		last = mesh.nearest(x, y, last);
+		return triangulation.vertex(last);
+	}
+
+	/**
+	 * Check for a batch of points whether they lie in the HDR. The points are
+	 * visited along a Morton curve, so every walk starts close to the point.
+	 * 
+	 * @param points
+	 *            points to check
+	 * @return for every point true if it lies in the HDR
+	 */
+	public boolean[] contains(Observations points) {
+		boolean[] result = new boolean[points.size()];
+		new QueryTask(points, order(points), result, 0, points.size())
+				.process(0, points.size());
+		return result;
+	}
+
+	/**
+	 * Check for a batch of points whether they lie in the HDR, in parallel.
+	 * Every thread checks a part of the points along the curve.
+	 * 
+	 * @param points
+	 *            points to check
+	 * @param pool
+	 *            pool to run the parallel tasks in
+	 * @return for every point true if it lies in the HDR
+	 */
+	public boolean[] contains(Observations points, ForkJoinPool pool) {
+		boolean[] result = new boolean[points.size()];
+		pool.invoke(new QueryTask(points, order(points), result, 0, points
+				.size()));
+		return result;
+	}
+
+	/**
+	 * Order points along a Morton curve on a coarse grid over their bounds,
+	 * with a counting sort on the grid cells. The Morton curve is cheaper to
+	 * compute than the Hilbert curve, which matters more here than its
+	 * jumps.
+	 * 
+	 * @param points
+	 *            points to order
+	 * @return indices of the points in order
+	 */
+	private static int[] order(Observations points) {
+		int n = points.size();
+		Bounds bounds = new Bounds();
+		for (int i = 0; i < n; i++) {
+			bounds.add(points.x(i), points.y(i));
+		}
+		int[] order = new int[n];
+		if (n == 0) {
+			return order;
+		}
+		// Distance along the curve on a grid of 2^ORDER_BITS cells per side
+		int shift = 16 - ORDER_BITS;
+		int[] keys = new int[n];
+		int[] starts = new int[(1 << 2 * ORDER_BITS) + 1];
+		for (int i = 0; i < n; i++) {
+			keys[i] = (int) SpatialSort.morton(
+					SpatialSort.grid(points.x(i), bounds.getMinX(),
+							bounds.getWidth()) >>> shift,
+					SpatialSort.grid(points.y(i), bounds.getMinY(),
+							bounds.getHeight()) >>> shift);
+			starts[keys[i] + 1]++;
+		}
+		for (int k = 1; k < starts.length; k++) {
+			starts[k] += starts[k - 1];
+		}
+		for (int i = 0; i < n; i++) {
+			order[starts[keys[i]]++] = i;
+		}
+		return order;
+	}
+
+	/**
+	 * Task checking a range of ordered points
+	 */
+	private class QueryTask extends RangeTask {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Observations points;
+		private final int[] order;
+		private final boolean[] result;
+
+		QueryTask(Observations points, int[] order, boolean[] result,
+				int from, int to) {
+			super(from, to);
+			this.points = points;
+			this.order = order;
+			this.result = result;
+		}
+
+		protected void process(int from, int to) {
+			// Every task walks on its own, starting at the last vertex
+			int v = last;
+			int i;
+			for (int k = from; k < to; k++) {
+				i = order[k];
+				v = mesh.nearest(points.x(i), points.y(i), v);
+				result[i] = inHDR[v];
+			}
+		}
+
+		protected RangeTask split(int from, int to) {
+			return new QueryTask(points, order, result, from, to);
+		}
+	}
+}
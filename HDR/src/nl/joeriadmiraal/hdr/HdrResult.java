@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Result of an HDR computation: areas and which vertices are in the HDR
+ * 
+ * @author Joeri
+ * 
+ */
+public class HdrResult {
+
+	private double alpha;
+	private Method method;
+	private double area;
+	private double totalArea;
+	private int nrInHDR;
+	private boolean[] inHDR;
+
+	/**
+	 * Create result
+	 * 
+	 * @param alpha
+	 *            percentage of observations excluded from the HDR
+	 * @param method
+	 *            graph method used
+	 * @param area
+	 *            area of the HDR
+	 * @param totalArea
+	 *            area of the triangulation of all observations
+	 * @param nrInHDR
+	 *            number of observations in the HDR, including duplicates
+	 * @param inHDR
+	 *            whether each vertex is in the HDR, by id
+	 */
+	public HdrResult(double alpha, Method method, double area,
+			double totalArea, int nrInHDR, boolean[] inHDR) {
+		this.alpha = alpha;
+		this.method = method;
+		this.area = area;
+		this.totalArea = totalArea;
+		this.nrInHDR = nrInHDR;
+		this.inHDR = inHDR;
+	}
+
+	/**
+	 * Get percentage of observations excluded from the HDR
+	 * 
+	 * @return alpha
+	 */
+	public double getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Get graph method used
+	 * 
+	 * @return graph method
+	 */
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * Get area of the HDR
+	 * 
+	 * @return area of the HDR
+	 */
+	public double getArea() {
+		return area;
+	}
+
+	/**
+	 * Get area of the triangulation of all observations
+	 * 
+	 * @return area of the triangulation
+	 */
+	public double getTotalArea() {
+		return totalArea;
+	}
+
+	/**
+	 * Get number of observations in the HDR, including duplicates
+	 * 
+	 * @return number of observations in the HDR
+	 */
+	public int getNrInHDR() {
+		return nrInHDR;
+	}
+
+	/**
+	 * Check whether a vertex is in the HDR. The id of a vertex is the index of
+	 * the first observation at its coordinates.
+	 * 
+	 * @param id
+	 *            id of the vertex
+	 * @return true if the vertex is in the HDR
+	 */
+	public boolean isInHDR(int id) {
+		return id >= 0 && id < inHDR.length && inHDR[id];
+	}
+}
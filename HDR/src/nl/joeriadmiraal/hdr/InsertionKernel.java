@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Way a vertex is inserted in a TriangleMesh
+ * 
+ * @author Joeri
+ * 
+ */
+public enum InsertionKernel {
+
+	/**
+	 * Remove all triangles with the vertex in their circumcircle and connect
+	 * the boundary of the cavity to the vertex
+	 */
+	BOWYER_WATSON,
+
+	/**
+	 * Split the triangle containing the vertex in three and flip edges
+	 * opposite to the vertex until the triangulation is Delaunay again
+	 * (Lawson)
+	 */
+	LAWSON
+}
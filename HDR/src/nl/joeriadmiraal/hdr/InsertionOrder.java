@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Order in which vertices are inserted in the Delaunay triangulation
+ * 
+ * @author Joeri
+ * 
+ */
+public enum InsertionOrder {
+
+	/**
+	 * Sort on x-coordinate only
+	 */
+	X_SORT,
+
+	/**
+	 * Sort along a Hilbert curve through the bounding box
+	 */
+	HILBERT,
+
+	/**
+	 * Sort along a Morton (Z-order) curve through the bounding box
+	 */
+	MORTON,
+
+	/**
+	 * Biased randomized insertion order: vertices are divided over rounds of
+	 * doubling size at random, each round is sorted along a Hilbert curve
+	 */
+	BRIO
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of ints without boxing. Used as priority queue of cells,
+ * where a cell is identified by its position in the sorted list of cells.
+ * 
+ * @author Joeri
+ * 
+ */
+public class IntHeap {
+
+	private int[] values;
+	private int size;
+
+	/**
+	 * Create an empty heap
+	 * 
+	 * @param capacity
+	 *            expected maximum number of values
+	 */
+	public IntHeap(int capacity) {
+		values = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Get the number of values in this heap
+	 * 
+	 * @return number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Check whether this heap is empty
+	 * 
+	 * @return true if this heap contains no values
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Add value to this heap
+	 * 
+	 * @param value
+	 *            value to add
+	 */
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		// Move parents down until place of value is found
+		int i = size++;
+		int parent;
+		while (i > 0) {
+			parent = (i - 1) >>> 1;
+			if (values[parent] <= value) {
+				break;
+			}
+			values[i] = values[parent];
+			i = parent;
+		}
+		values[i] = value;
+	}
+
+	/**
+	 * Get smallest value without removing it
+	 * 
+	 * @return smallest value
+	 */
+	public int peek() {
+		if (size == 0) {
+			throw new IllegalStateException("Heap is empty");
+		}
+		return values[0];
+	}
+
+	/**
+	 * Remove and return smallest value
+	 * 
+	 * @return smallest value
+	 */
+	public int poll() {
+		int result = peek();
+		int last = values[--size];
+		// Move smallest children up until place of last value is found
+		int i = 0;
+		int child;
+		while ((child = 2 * i + 1) < size) {
+			if (child + 1 < size && values[child + 1] < values[child]) {
+				child++;
+			}
+			if (last <= values[child]) {
+				break;
+			}
+			values[i] = values[child];
+			i = child;
+		}
+		values[i] = last;
+		return result;
+	}
+
+	/**
+	 * Remove all values
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
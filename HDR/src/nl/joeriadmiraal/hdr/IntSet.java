@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Arrays;
+
+/**
+ * Set of ints without boxing. Values are kept in a small array that grows as
+ * needed, so they can be iterated by index. Sets with many values get a hash
+ * index for fast lookups.
+ * 
+ * @author Joeri
+ * 
+ */
+public class IntSet {
+
+	// Size from which a hash index is kept
+	private static final int HASHED = 16;
+	// Marks an empty place in the hash index
+	private static final int EMPTY = -1;
+
+	private int[] values;
+	private int size;
+	// Position of each value in values, open addressing with linear probing
+	private int[] index;
+
+	/**
+	 * Create an empty set, with room for the typical number of neighbours in a
+	 * Delaunay triangulation
+	 */
+	public IntSet() {
+		values = new int[6];
+	}
+
+	/**
+	 * Get the number of values in this set
+	 * 
+	 * @return number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Check whether this set is empty
+	 * 
+	 * @return true if this set contains no values
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Get value at position i, positions are 0 to size() - 1. Removing a value
+	 * moves the last value to its position.
+	 * 
+	 * @param i
+	 *            position
+	 * @return value at position i
+	 */
+	public int get(int i) {
+		return values[i];
+	}
+
+	/**
+	 * Check whether value is in this set
+	 * 
+	 * @param value
+	 *            value to be checked
+	 * @return true if value is in this set
+	 */
+	public boolean contains(int value) {
+		return find(value) >= 0;
+	}
+
+	/**
+	 * Add value to this set
+	 * 
+	 * @param value
+	 *            value to be added
+	 * @return true if value was not yet in this set
+	 */
+	public boolean add(int value) {
+		if (find(value) >= 0) {
+			return false;
+		}
+		if (size == values.length) {
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		values[size] = value;
+		size++;
+		if (index != null) {
+			if (2 * size > index.length) {
+				rehash();
+			} else {
+				put(size - 1);
+			}
+		} else if (size > HASHED) {
+			rehash();
+		}
+		return true;
+	}
+
+	/**
+	 * Remove value from this set
+	 * 
+	 * @param value
+	 *            value to be removed
+	 * @return true if value was in this set
+	 */
+	public boolean remove(int value) {
+		int i = find(value);
+		if (i < 0) {
+			return false;
+		}
+		if (index != null) {
+			delete(value);
+		}
+		size--;
+		if (i != size) {
+			// Move last value to the empty position
+			values[i] = values[size];
+			if (index != null) {
+				index[slot(values[i])] = i;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all values
+	 */
+	public void clear() {
+		size = 0;
+		index = null;
+	}
+
+	/**
+	 * Copy values of this set to a new array
+	 * 
+	 * @return array with the values of this set
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Get the position of value in values
+	 * 
+	 * @param value
+	 *            value to be found
+	 * @return position of value, -1 if it is not in this set
+	 */
+	private int find(int value) {
+		if (index == null) {
+			for (int i = 0; i < size; i++) {
+				if (values[i] == value) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int s = slot(value);
+		return index[s];
+	}
+
+	/**
+	 * Get the slot in the hash index of value, or the empty slot where it
+	 * should be placed
+	 * 
+	 * @param value
+	 *            value to be found
+	 * @return slot in the hash index
+	 */
+	private int slot(int value) {
+		int mask = index.length - 1;
+		int s = hash(value) & mask;
+		while (index[s] != EMPTY && values[index[s]] != value) {
+			s = (s + 1) & mask;
+		}
+		return s;
+	}
+
+	/**
+	 * Put the value at position i in the hash index
+	 * 
+	 * @param i
+	 *            position of value
+	 */
+	private void put(int i) {
+		index[slot(values[i])] = i;
+	}
+
+	/**
+	 * Remove value from the hash index, shifting back the values after it
+	 * 
+	 * @param value
+	 *            value to be removed
+	 */
+	private void delete(int value) {
+		int mask = index.length - 1;
+		int s = slot(value);
+		int next = (s + 1) & mask;
+		int home;
+		while (index[next] != EMPTY) {
+			home = hash(values[index[next]]) & mask;
+			// Move value back if its home is not between the empty slot and
+			// its current slot
+			if (((next - home) & mask) >= ((next - s) & mask)) {
+				index[s] = index[next];
+				s = next;
+			}
+			next = (next + 1) & mask;
+		}
+		index[s] = EMPTY;
+	}
+
+	/**
+	 * Build a new hash index for the current values
+	 */
+	private void rehash() {
+		int length = 32;
+		while (length < 4 * size) {
+			length *= 2;
+		}
+		index = new int[length];
+		Arrays.fill(index, EMPTY);
+		for (int i = 0; i < size; i++) {
+			put(i);
+		}
+	}
+
+	/**
+	 * Spread bits of value over the hash
+	 * 
+	 * @param value
+	 *            value to be hashed
+	 * @return hash of value
+	 */
+	private static int hash(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics that add up timings and counters, readable as MXBean in JConsole
+ * or any other JMX client once registered. Can be used by several threads
+ * at the same time.
+ * 
+ * @author Joeri
+ * 
+ */
+public class JmxMetrics implements Metrics, JmxMetricsMXBean {
+
+	/**
+	 * Name the metrics are registered with
+	 */
+	public static final String NAME = "nl.joeriadmiraal.hdr:type=Metrics";
+
+	private final AtomicLongArray nanos = new AtomicLongArray(
+			Phase.values().length);
+	private final AtomicLongArray counts = new AtomicLongArray(
+			Counter.values().length);
+
+	public void time(Phase phase, long nanos) {
+		this.nanos.addAndGet(phase.ordinal(), nanos);
+	}
+
+	public void count(Counter counter, long amount) {
+		counts.addAndGet(counter.ordinal(), amount);
+	}
+
+	/**
+	 * Get time spent in a phase
+	 * 
+	 * @param phase
+	 *            phase
+	 * @return time in nanoseconds
+	 */
+	public long getNanos(Phase phase) {
+		return nanos.get(phase.ordinal());
+	}
+
+	/**
+	 * Get value of a counter
+	 * 
+	 * @param counter
+	 *            counter
+	 * @return value of the counter
+	 */
+	public long getCount(Counter counter) {
+		return counts.get(counter.ordinal());
+	}
+
+	public Map<String, Long> getNanos() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (Phase phase : Phase.values()) {
+			map.put(phase.name(), getNanos(phase));
+		}
+		return map;
+	}
+
+	public Map<String, Long> getCounts() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (Counter counter : Counter.values()) {
+			map.put(counter.name(), getCount(counter));
+		}
+		return map;
+	}
+
+	public void reset() {
+		for (int i = 0; i < nanos.length(); i++) {
+			nanos.set(i, 0L);
+		}
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0L);
+		}
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server under NAME,
+	 * replacing metrics registered before
+	 */
+	public void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("Metrics can not be registered",
+					e);
+		}
+	}
+
+	/**
+	 * Get all timings in milliseconds and all counters, one per line
+	 * 
+	 * @return report of the metrics
+	 */
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			report.append(phase.name().toLowerCase()).append(" time in ms: ")
+					.append(getNanos(phase) / 1e6).append('\n');
+		}
+		for (Counter counter : Counter.values()) {
+			report.append(counter.name().toLowerCase()).append(": ")
+					.append(getCount(counter)).append('\n');
+		}
+		return report.toString();
+	}
+}
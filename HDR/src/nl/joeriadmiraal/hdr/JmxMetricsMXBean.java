@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Map;
+
+/**
+ * Management interface of JmxMetrics
+ * 
+ * @author Joeri
+ * 
+ */
+public interface JmxMetricsMXBean {
+
+	/**
+	 * Get time spent in each phase
+	 * 
+	 * @return nanoseconds by name of the phase
+	 */
+	public Map<String, Long> getNanos();
+
+	/**
+	 * Get value of each counter
+	 * 
+	 * @return value by name of the counter
+	 */
+	public Map<String, Long> getCounts();
+
+	/**
+	 * Set all timings and counters to zero
+	 */
+	public void reset();
+}
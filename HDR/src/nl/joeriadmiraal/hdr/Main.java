@@ -15,20 +15,9 @@
 
 package nl.joeriadmiraal.hdr;
 
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Frame;
-import java.awt.Rectangle;
-import java.awt.Toolkit;
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
-import java.awt.geom.Ellipse2D;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import javax.swing.JFrame;
 
 /**
  * Main class
@@ -43,18 +32,22 @@ public class Main {
      */
     public static void main(String[] args) {
 
-	// Do you want to create a new sample? If false, observations.txt will
-	// be read (containing observations of last created sample).
+	// Do you want to create a new sample? If false, Observations.bin or
+	// else Observations.txt will be read (containing observations of last
+	// created sample).
 	boolean newSample = true;
 	// Amount of generated observations (only when creating new sample)
 	int nrOfObs = 10000;
 	// Percentage of observations to be excluded from the hdr
 	double alpha = 0.1;
+	// Percentages of observations to be excluded from the HDRs to print
+	// areas of, computed from one top-down or bottom-up pass
+	double[] levels = { 0.5, 0.2, 0.1, 0.05, 0.01 };
 	// Which graph method to use?
-	// 0 is simple, does not ensure connected graph without holes
-	// 1 is top-down approach
-	// 2 is bottom-up approach
-	int method = 1;
+	// SIMPLE does not ensure connected graph without holes
+	// TOP_DOWN is top-down approach
+	// BOTTOM_UP is bottom-up approach
+	Method method = Method.TOP_DOWN;
 	// Set parameters of normal distribution
 	double[][] parameters = new double[2][2];
 	// muX
@@ -67,67 +60,40 @@ public class Main {
 	parameters[1][1] = 1.0;
 	// Independent?
 	boolean independent = true;
+	// Show results in a window? Without window no AWT is used, so it also
+	// runs on headless machines
+	boolean display = true;
 	// Draw theoretical?
 	boolean theoreticalDrawing = true;
 
-	// Create frame for printing results
-	final JFrame frame = new JFrame("Voronoi");
-	frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-	frame.setBackground(Color.white);
-	Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-	frame.setSize(screenSize.width, screenSize.height - 40);
-	frame.setExtendedState(Frame.MAXIMIZED_BOTH);
-
 	// Generate observations
-	double[][] observations;
+	Observations observations;
 	if (newSample) {
 	    SampleNormal gen = new SampleNormal(nrOfObs, parameters,
 		    independent);
 	    gen.writeObservations("Observations");
-	    observations = gen.getObservations();
+	    observations = new ArrayObservations(gen.getObservations());
 	} else {
 	    observations = readData("Observations");
 	}
 
-	long startTimeVoronoi = System.currentTimeMillis();
-
-	// Create delaunay triangulation of observations
-	Watson w = new Watson(observations);
-
-	// Calculate area of voronoi cells
-	w.calcVoronoi();
+	// Measure phases of the computation, also visible in JConsole
+	JmxMetrics metrics = new JmxMetrics();
+	metrics.register();
+	HdrMetrics.set(metrics);
 
-	long endTimeVoronoi = System.currentTimeMillis();
+	// Create delaunay triangulation of observations and calculate area of
+	// voronoi cells
+	HdrEngine engine = new HdrEngine(new Watson(observations));
 
-	Rectangle dimensions = w.getDimensions();
-
-	frame.setVisible(true);
 	// Draw results
-	final Drawing results = new Drawing(w.getVertices(), w.getEdges());
-	results.setDimensions(dimensions);
-	frame.add(results);
-	frame.addComponentListener(new ComponentAdapter() {
-	    public void componentResized(ComponentEvent e) {
-		results.setBounds(frame.getBounds());
-		results.repaint();
-	    }
-	});
-
-	long startTimeGraph = System.currentTimeMillis();
-
-	// Create graph
-	GraphTheory graph = new GraphTheory(w.getVertices());
-	if (method == 0) {
-	    graph.simple((int) (alpha * observations.length));
-	} else if (method == 1) {
-	    // Top-down approach
-	    graph.topDown((int) (alpha * observations.length));
-	} else if (method == 2) {
-	    // Bottom-up approach
-	    graph.bottomUp((int) (observations.length * (1.0 - alpha)));
+	Drawing results = null;
+	if (display) {
+	    results = Drawing.show("Voronoi", engine.getTriangulation());
 	}
 
-	long endTimeGraph = System.currentTimeMillis();
+	// Compute hdr
+	HdrResult hdr = engine.compute(alpha, method);
 
 	// Redraw results, with hdr
 	double theoreticalArea = 0.0;
@@ -140,88 +106,76 @@ public class Main {
 	    double width = parameters[0][1] * c2;
 	    double height = parameters[1][1] * c2;
 	    theoreticalArea = Math.PI * width * height;
-	    Ellipse2D.Double ellipse = new Ellipse2D.Double(parameters[0][0]
-		    - width, parameters[1][0] - height, width * 2.0,
-		    height * 2.0);
-	    for (Vertex v : w.getVertices()) {
-		if (v.isInHDR() && ellipse.contains(v.x(), v.y())) {
+	    double dx, dy;
+	    for (Vertex v : engine.getTriangulation().getVertices()) {
+		dx = (v.x() - parameters[0][0]) / width;
+		dy = (v.y() - parameters[1][0]) / height;
+		if (v.isInHDR() && dx * dx + dy * dy < 1.0) {
 		    nrInEllipse += v.getNrDuplicates() + 1;
 		}
 	    }
-	    double[][] theoretical = new double[2][2];
-	    theoretical[0][0] = parameters[0][0];
-	    theoretical[1][0] = parameters[1][0];
-	    theoretical[0][1] = width;
-	    theoretical[1][1] = height;
-	    results.drawTheoretical(theoretical);
+	    if (display) {
+		double[][] theoretical = new double[2][2];
+		theoretical[0][0] = parameters[0][0];
+		theoretical[1][0] = parameters[1][0];
+		theoretical[0][1] = width;
+		theoretical[1][1] = height;
+		results.drawTheoretical(theoretical);
+	    }
 	}
 
-	results.drawHDR(true);
-	frame.repaint();
+	if (display) {
+	    results.drawHDR(true);
+	    results.repaint();
+	}
 
 	// Print results
 	System.out.println("Results of " + (1 - alpha) + "% HDR of " + nrOfObs
 		+ " observations");
-	System.out.println("Voronoi time in milliseconds: "
-		+ (endTimeVoronoi - startTimeVoronoi));
-	System.out.println("Graph time in milliseconds: "
-		+ (endTimeGraph - startTimeGraph));
-	System.out.println("Initial area: " + w.getArea());
-	System.out.println("HDR area: " + graph.getArea());
+	System.out.print(metrics);
+	System.out.println("Initial area: " + hdr.getTotalArea());
+	System.out.println("HDR area: " + hdr.getArea());
 	if (theoreticalDrawing) {
 	    System.out.println("Theoretical HDR area: " + theoreticalArea);
 	    System.out
 		    .println("Vertices in theoretical area and HDR: "
-			    + (100 * nrInEllipse / ((1.0 - alpha) * observations.length))
+			    + (100 * nrInEllipse / ((1.0 - alpha) * observations.size()))
 			    + "%");
 	}
+
+	// Print areas of nested HDRs from one pass
+	HdrResult[] levelResults = engine.compute(levels, method);
+	for (int i = 0; i < levels.length; i++) {
+	    System.out.println("HDR area of " + (1 - levels[i]) + "%: "
+		    + levelResults[i].getArea());
+	}
+	// Select HDR that is drawn again
+	engine.compute(alpha, method);
+	if (display) {
+	    results.repaint();
+	}
     }
 
     /**
-     * Read coordinates of observations from file. Each observation should be on
-     * an own line, with two coordinates seperated with a tab
+     * Read coordinates of observations from file. A binary file (.bin) is
+     * mapped into memory if it exists. Otherwise each observation should be on
+     * an own line of the .txt file, with two coordinates seperated with a tab
      * 
      * @param fileName
-     *            the name of the .txt file (without .txt)
-     * @return double array with observations as rows, with x-coord in first
-     *         column and y-coord in second column
+     *            the name of the file (without .txt or .bin)
+     * @return observations
      */
-    private static double[][] readData(String fileName) {
-	ArrayList<double[]> file = new ArrayList<double[]>();
-	BufferedReader rdr = null;
+    private static Observations readData(String fileName) {
 	try {
-	    rdr = new BufferedReader(new FileReader(fileName + ".txt"));
-
-	    String s = null;
-
-	    do {
-		s = rdr.readLine();
-		if (s != null) {
-		    String[] split = s.split("\t");
-		    int length = split.length;
-		    double[] tmp = new double[length];
-		    for (int i = 0; i < length; i++) {
-			tmp[i] = Double.parseDouble(split[i]);
-		    }
-		    file.add(tmp);
-		}
-	    } while (s != null);
+	    if (new File(fileName + ".bin").exists()) {
+		return new BinaryObservations(fileName + ".bin");
+	    }
+	    return ObservationParser.read(fileName + ".txt");
 	} catch (FileNotFoundException e) {
 	    System.out.println("File not found");
 	} catch (IOException e) {
 	    System.out.println("Error reading file" + e.getMessage());
-	} finally {
-	    try {
-		if (rdr != null) {
-		    rdr.close();
-		}
-	    } catch (IOException e) {
-	    }
-	}
-	double[][] returnval = new double[file.size()][file.get(0).length];
-	for (int j = 0; j < file.size(); j++) {
-	    returnval[j] = file.get(j);
 	}
-	return returnval;
+	return new ArrayObservations(0);
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.joeriadmiraal.hdr.Metrics.Phase;
+
+/**
+ * HdrEngine on a MeshTriangulation. Observations can be inserted and removed,
+ * after which the last HDR is repaired around them, points can be checked
+ * against the last HDR with a query, and the engine can be saved to a
+ * snapshot file.
+ * 
+ * @author Joeri
+ * 
+ */
+public class MeshHdrEngine extends HdrEngine {
+
+	private MeshTriangulation triangulation;
+
+	/**
+	 * Create engine of a snapshot, the Voronoi data is not calculated again
+	 * 
+	 * @param triangulation
+	 *            triangulation with Voronoi data
+	 * @param graph
+	 *            graph with the HDR of the last computation, or null
+	 * @param nrObservations
+	 *            number of observations, including duplicates
+	 * @param alpha
+	 *            alpha of the last computation
+	 * @param method
+	 *            method of the last computation, or null
+	 */
+	MeshHdrEngine(MeshTriangulation triangulation, GraphTheory graph,
+			int nrObservations, double alpha, Method method) {
+		super(triangulation, graph, nrObservations, alpha, method);
+		this.triangulation = triangulation;
+	}
+
+	/**
+	 * Create engine for observations
+	 * 
+	 * @param observations
+	 *            observations with x-coord in first column and y-coord in
+	 *            second column
+	 */
+	public MeshHdrEngine(double[][] observations) {
+		this(new MeshTriangulation(observations));
+	}
+
+	/**
+	 * Create engine for observations
+	 * 
+	 * @param observations
+	 *            observations
+	 */
+	public MeshHdrEngine(Observations observations) {
+		this(new MeshTriangulation(observations));
+	}
+
+	/**
+	 * Create engine for the observations of a triangulation
+	 * 
+	 * @param triangulation
+	 *            Delaunay triangulation of the observations
+	 */
+	public MeshHdrEngine(MeshTriangulation triangulation) {
+		super(triangulation);
+		this.triangulation = triangulation;
+	}
+
+	/**
+	 * Insert new observations. Voronoi cells are computed again only for the
+	 * observations of which the triangles changed, and the HDR of the last
+	 * computation is repaired around them with GraphTheory.repair.
+	 * 
+	 * @param observations
+	 *            new observations
+	 * @return areas and vertices of the repaired HDR, null if no HDR was
+	 *         computed yet
+	 */
+	public HdrResult insert(Observations observations) {
+		return update(observations, new ArrayObservations(0));
+	}
+
+	/**
+	 * Remove observations, like insert
+	 * 
+	 * @param observations
+	 *            observations to remove, at the coordinates of vertices
+	 * @return areas and vertices of the repaired HDR, null if no HDR was
+	 *         computed yet
+	 */
+	public HdrResult remove(Observations observations) {
+		return update(new ArrayObservations(0), observations);
+	}
+
+	/**
+	 * Remove and insert observations, and repair the HDR once for both
+	 * 
+	 * @param added
+	 *            new observations
+	 * @param removed
+	 *            observations to remove, at the coordinates of vertices
+	 * @return areas and vertices of the repaired HDR, null if no HDR was
+	 *         computed yet
+	 */
+	public HdrResult update(Observations added, Observations removed) {
+		// Remove first, so no vertex of the changed list is removed
+		List<Vertex> changed = new ArrayList<Vertex>();
+		if (removed.size() > 0) {
+			changed.addAll(triangulation.remove(removed));
+		}
+		if (added.size() > 0) {
+			changed.addAll(triangulation.insert(added));
+		}
+		nrObservations += added.size() - removed.size();
+		if (lastMethod == null) {
+			return null;
+		}
+		long start = HdrMetrics.start();
+		graph.repair(changed, nrObservations);
+		HdrMetrics.stop(Phase.PEELING, start);
+		graph.reportCounts();
+		return result(lastAlpha, lastMethod);
+	}
+
+	/**
+	 * Create query checking whether points lie in the HDR of the last
+	 * computation
+	 * 
+	 * @return query on the current HDR
+	 */
+	public HdrQuery query() {
+		if (lastMethod == null) {
+			throw new IllegalStateException("No HDR computed");
+		}
+		return new HdrQuery(triangulation);
+	}
+
+	/**
+	 * Write the triangulation, Voronoi data and HDR of the last computation
+	 * to a binary snapshot file
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public void save(String fileName) throws IOException {
+		Snapshot.write(triangulation, lastMethod == null ? null : graph,
+				nrObservations, lastAlpha, lastMethod, fileName);
+	}
+
+	/**
+	 * Create engine of a snapshot file written by save, without calculating
+	 * the triangulation and Voronoi data again
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @return engine with the HDR of the last computation before saving
+	 * @throws IOException
+	 *             if the file can not be read or is not a snapshot
+	 */
+	public static MeshHdrEngine load(String fileName) throws IOException {
+		return Snapshot.read(fileName);
+	}
+
+	/**
+	 * Get the triangulation, with Voronoi data and the HDR of the last
+	 * computation
+	 * 
+	 * @return triangulation
+	 */
+	public MeshTriangulation getTriangulation() {
+		return triangulation;
+	}
+}
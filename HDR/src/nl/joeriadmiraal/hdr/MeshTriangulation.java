@@ -0,0 +1,696 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import nl.joeriadmiraal.hdr.Metrics.Phase;
+
+/**
+ * Delaunay triangulation built on the compact TriangleMesh. Vertices keep
+ * their neighbours, so GraphTheory can use them directly. Triangles and edges
+ * for drawing are only created when they are asked for. Observations can be
+ * inserted and removed later, only the cells around them are updated.
+ * 
+ * @author Joeri
+ * 
+ */
+public class MeshTriangulation extends Triangulation {
+
+	private TriangleMesh mesh;
+	// Vertex objects by vertex of the mesh minus SUPER, null for removed
+	// vertices, the list of vertices may be reordered by others
+	private Vertex[] meshVertices;
+	private boolean adapted = false;
+	private boolean voronoi = false;
+	// Neighbour rings, kept up to date once created
+	private NeighbourRings rings;
+	// Mesh vertex of every point, created at the first insertion
+	private PointTable points;
+	// Id of the next inserted observation
+	private int nextID;
+	// Position in the list of vertices by vertex of the mesh minus SUPER,
+	// created at the first removal and checked before use
+	private int[] positions;
+
+	/**
+	 * Create Delaunay triangulation for observations, inserting them along a
+	 * Hilbert curve
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 */
+	public MeshTriangulation(double[][] observations) {
+		this(new ArrayObservations(observations));
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param order
+	 *            order in which observations are inserted
+	 */
+	public MeshTriangulation(double[][] observations, InsertionOrder order) {
+		this(new ArrayObservations(observations), order);
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations, inserting them along a
+	 * Hilbert curve
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 */
+	public MeshTriangulation(Observations observations) {
+		this(observations, InsertionOrder.HILBERT);
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param order
+	 *            order in which observations are inserted
+	 */
+	public MeshTriangulation(Observations observations, InsertionOrder order) {
+		this(observations, order, InsertionKernel.BOWYER_WATSON);
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param order
+	 *            order in which observations are inserted
+	 * @param kernel
+	 *            kernel used to insert observations, also later ones
+	 */
+	public MeshTriangulation(Observations observations, InsertionOrder order,
+			InsertionKernel kernel) {
+		// Create vertices of observations
+		long start = HdrMetrics.start();
+		readObservations(observations);
+		nextID = observations.size();
+		HdrMetrics.stop(Phase.INGESTION, start);
+
+		// Sort observations in insertion order
+		start = HdrMetrics.start();
+		SpatialSort.sort(vertices, order, bounds);
+		HdrMetrics.stop(Phase.SORTING, start);
+
+		// Vertex i of the list is vertex i + SUPER of the mesh
+		start = HdrMetrics.start();
+		mesh = new TriangleMesh(vertices.size());
+		mesh.setKernel(kernel);
+		mesh.setSuperTriangle(bounds.getMinX(), bounds.getMinY(),
+				bounds.getMaxX(), bounds.getMaxY());
+		HdrMetrics.stop(Phase.SUPER_TRIANGLE, start);
+		start = HdrMetrics.start();
+		meshVertices = vertices.toArray(new Vertex[vertices.size()]);
+		for (Vertex v : vertices) {
+			mesh.insert(mesh.addVertex(v.x(), v.y()));
+		}
+
+		// Connect neighbours, every edge is visited from both sides
+		Vertex a, b;
+		for (int t = 0; t < mesh.getNrSlots(); t++) {
+			if (mesh.isTriangle(t)) {
+				for (int i = 0; i < 3; i++) {
+					a = vertex(mesh.getCorner(t, (i + 1) % 3));
+					b = vertex(mesh.getCorner(t, (i + 2) % 3));
+					if (a != null && b != null) {
+						a.addNeighbour(b.getID());
+					}
+				}
+			}
+		}
+		HdrMetrics.stop(Phase.INSERTION, start);
+		mesh.reportCounts();
+	}
+
+	/**
+	 * Create triangulation of a snapshot, with Voronoi data and neighbours
+	 * 
+	 * @param mesh
+	 *            mesh of the triangulation
+	 * @param meshVertices
+	 *            vertex objects by vertex of the mesh minus SUPER, null for
+	 *            removed vertices
+	 * @param rings
+	 *            neighbour rings of the vertices
+	 */
+	MeshTriangulation(TriangleMesh mesh, Vertex[] meshVertices,
+			NeighbourRings rings) {
+		this.mesh = mesh;
+		this.meshVertices = meshVertices;
+		this.rings = rings;
+		nextID = rings.getNrIDs();
+		voronoi = true;
+		vertices = new ArrayList<Vertex>(meshVertices.length);
+		for (Vertex v : meshVertices) {
+			if (v != null) {
+				vertices.add(v);
+				bounds.add(v.x(), v.y());
+				for (int i = rings.getStart(v.getID()); i < rings.getEnd(v
+						.getID()); i++) {
+					v.addNeighbour(rings.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the vertex object of a vertex of the mesh
+	 * 
+	 * @param v
+	 *            vertex of the mesh
+	 * @return vertex object, null for vertices of the super triangle and
+	 *         removed vertices
+	 */
+	Vertex vertex(int v) {
+		if (v < TriangleMesh.SUPER) {
+			return null;
+		}
+		return meshVertices[v - TriangleMesh.SUPER];
+	}
+
+	/**
+	 * Create triangles and edges of the mesh. Like in Watson, triangles with a
+	 * vertex of the super triangle are left out.
+	 */
+	private void adapt() {
+		adapted = true;
+		Triangle[] objects = new Triangle[mesh.getNrSlots()];
+		for (int t = 0; t < mesh.getNrSlots(); t++) {
+			if (mesh.isTriangle(t) && !mesh.isSuper(t)) {
+				objects[t] = new Triangle(vertex(mesh.getCorner(t, 0)),
+						vertex(mesh.getCorner(t, 1)), vertex(mesh.getCorner(
+								t, 2)));
+				addTriangle(objects[t]);
+			}
+		}
+		// Create every edge between two observations once, from the triangle
+		// with the lowest slot
+		Vertex a, b;
+		int n;
+		for (int t = 0; t < mesh.getNrSlots(); t++) {
+			if (mesh.isTriangle(t)) {
+				for (int i = 0; i < 3; i++) {
+					n = mesh.getNeighbour(t, i);
+					a = vertex(mesh.getCorner(t, (i + 1) % 3));
+					b = vertex(mesh.getCorner(t, (i + 2) % 3));
+					if (a != null && b != null && (n < 0 || t < n)) {
+						addEdge(a, b, objects[t], n < 0 ? null : objects[n]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate Voronoi data for all vertices (area). Cells are calculated from
+	 * the mesh, cells of vertices at the super triangle are bounds.
+	 */
+	public void calcVoronoi() {
+		voronoi = true;
+		if (adapted) {
+			super.calcVoronoi();
+			return;
+		}
+		double[] centre = new double[2];
+		for (int p = TriangleMesh.SUPER; p < mesh.getNrVertices(); p++) {
+			if (mesh.getTriangle(p) >= 0) {
+				calcCell(p, centre);
+			}
+		}
+	}
+
+	/**
+	 * Calculate Voronoi data for all vertices (area) in parallel. Every thread
+	 * calculates the cells of its own part of the vertices from the mesh.
+	 * 
+	 * @param pool
+	 *            pool to run the parallel tasks in
+	 */
+	public void calcVoronoi(ForkJoinPool pool) {
+		if (adapted) {
+			voronoi = true;
+			super.calcVoronoi(pool);
+			return;
+		}
+		pool.invoke(new CellTask(TriangleMesh.SUPER, mesh.getNrVertices()));
+		voronoi = true;
+	}
+
+	/**
+	 * Calculate Voronoi cell of vertex p of the mesh. Walks counterclockwise
+	 * around p, summing the area of the polygon of centres of the triangles.
+	 * 
+	 * @param p
+	 *            vertex of the mesh
+	 * @param centre
+	 *            array of length 2 to store centres in
+	 */
+	private void calcCell(int p, double[] centre) {
+		Vertex v = vertex(p);
+		int first = mesh.getTriangle(p);
+		int t = first;
+		int corner;
+		boolean bound = false;
+		double sum = 0.0;
+		mesh.getCentre(t, centre);
+		double firstX = centre[0];
+		double firstY = centre[1];
+		double previousX = firstX;
+		double previousY = firstY;
+		do {
+			bound |= mesh.isSuper(t);
+			corner = mesh.cornerOf(t, p);
+			t = mesh.getNeighbour(t, (corner + 1) % 3);
+			mesh.getCentre(t, centre);
+			sum += previousX * centre[1] - centre[0] * previousY;
+			previousX = centre[0];
+			previousY = centre[1];
+		} while (t != first);
+		sum += previousX * firstY - firstX * previousY;
+		v.setBound(bound);
+		if (bound) {
+			v.setArea(Double.POSITIVE_INFINITY);
+		} else {
+			v.setArea((sum / 2.0) / (1 + v.getNrDuplicates()));
+		}
+	}
+
+	/**
+	 * Task calculating Voronoi cells of vertices of the mesh
+	 */
+	private class CellTask extends RangeTask {
+
+		private static final long serialVersionUID = 1L;
+
+		CellTask(int from, int to) {
+			super(from, to);
+		}
+
+		protected void process(int from, int to) {
+			double[] centre = new double[2];
+			for (int p = from; p < to; p++) {
+				if (mesh.getTriangle(p) >= 0) {
+					calcCell(p, centre);
+				}
+			}
+		}
+
+		protected RangeTask split(int from, int to) {
+			return new CellTask(from, to);
+		}
+	}
+
+	/**
+	 * Get neighbours of all vertices in cyclic order, walking counterclockwise
+	 * around every vertex of the mesh. The rings are created once and updated
+	 * when observations are inserted.
+	 * 
+	 * @return neighbour rings of all vertices
+	 */
+	public NeighbourRings getNeighbourRings() {
+		if (rings != null) {
+			return rings;
+		}
+		int nrIDs = NeighbourRings.nrIDs(vertices);
+		rings = new NeighbourRings(nrIDs,
+				NeighbourRings.nrNeighbours(vertices));
+		// Mesh vertex of every id
+		int[] meshVertex = new int[nrIDs];
+		Arrays.fill(meshVertex, -1);
+		for (int i = 0; i < mesh.getNrVertices() - TriangleMesh.SUPER; i++) {
+			if (meshVertices[i] != null) {
+				meshVertex[meshVertices[i].getID()] = i + TriangleMesh.SUPER;
+			}
+		}
+		int[] ring = new int[16];
+		int p, first, t, corner, q, nr;
+		for (int id = 0; id < nrIDs; id++) {
+			p = meshVertex[id];
+			nr = 0;
+			if (p >= 0) {
+				first = mesh.getTriangle(p);
+				t = first;
+				do {
+					corner = mesh.cornerOf(t, p);
+					q = mesh.getCorner(t, (corner + 2) % 3);
+					if (q >= TriangleMesh.SUPER) {
+						if (nr == ring.length) {
+							ring = Arrays.copyOf(ring, 2 * nr);
+						}
+						ring[nr++] = vertex(q).getID();
+					}
+					t = mesh.getNeighbour(t, (corner + 1) % 3);
+				} while (t != first);
+			}
+			rings.add(id, ring, nr);
+		}
+		return rings;
+	}
+
+	/**
+	 * Insert observations in the triangulation. An observation at the
+	 * coordinates of a vertex is added as duplicate. Neighbours, neighbour
+	 * rings and, if calculated, Voronoi cells are updated for the new vertices
+	 * and their neighbours only. Triangles and edges for drawing are created
+	 * again when they are asked for.
+	 * 
+	 * @param observations
+	 *            observations to insert, inside the super triangle
+	 * @return vertices of which the cell changed, including new vertices
+	 */
+	public List<Vertex> insert(Observations observations) {
+		for (int i = 0; i < observations.size(); i++) {
+			if (!mesh.isInside(observations.x(i), observations.y(i))) {
+				throw new IllegalArgumentException("Observation ("
+						+ observations.x(i) + ", " + observations.y(i)
+						+ ") is outside the super triangle");
+			}
+		}
+		if (adapted) {
+			clearAdaptation();
+		}
+		createPoints(observations.size());
+
+		// Insert observations along a Hilbert curve, so every walk is short,
+		// collecting the vertices of their cavities
+		List<Vertex> batch = new ArrayList<Vertex>(observations.size());
+		Bounds batchBounds = new Bounds();
+		Vertex v;
+		for (int i = 0; i < observations.size(); i++) {
+			v = new Vertex(observations.x(i), observations.y(i));
+			v.setID(nextID++);
+			batch.add(v);
+			batchBounds.add(v.x(), v.y());
+		}
+		SpatialSort.sort(batch, InsertionOrder.HILBERT, batchBounds);
+		long start = HdrMetrics.start();
+		IntSet changed = new IntSet();
+		for (Vertex b : batch) {
+			insertVertex(b, changed);
+		}
+		HdrMetrics.stop(Phase.INSERTION, start);
+		mesh.reportCounts();
+		return update(changed);
+	}
+
+	/**
+	 * Remove observations from the triangulation. Of an observation at the
+	 * coordinates of a vertex with duplicates only a duplicate is removed,
+	 * otherwise the vertex is removed from the mesh and from the list of
+	 * vertices. Neighbours, neighbour rings and, if calculated, Voronoi cells
+	 * are updated for the neighbours of removed vertices only.
+	 * 
+	 * @param observations
+	 *            observations to remove, at the coordinates of vertices
+	 * @return vertices of which the cell changed, not including removed
+	 *         vertices
+	 */
+	public List<Vertex> remove(Observations observations) {
+		createPoints(0);
+		// Check all observations before changing anything, a vertex can not
+		// be removed more often than it was observed
+		int[] removals = new int[observations.size()];
+		for (int i = 0; i < observations.size(); i++) {
+			removals[i] = points.get(observations.x(i), observations.y(i));
+			if (removals[i] < 0) {
+				throw new IllegalArgumentException("No observation at ("
+						+ observations.x(i) + ", " + observations.y(i) + ")");
+			}
+		}
+		int[] sorted = removals.clone();
+		Arrays.sort(sorted);
+		int i = 0, j;
+		Vertex v;
+		while (i < sorted.length) {
+			j = i + 1;
+			while (j < sorted.length && sorted[j] == sorted[i]) {
+				j++;
+			}
+			v = vertex(sorted[i]);
+			if (j - i > v.getNrDuplicates() + 1) {
+				throw new IllegalArgumentException("Observation at (" + v.x()
+						+ ", " + v.y() + ") removed " + (j - i)
+						+ " times but observed " + (v.getNrDuplicates() + 1)
+						+ " times");
+			}
+			i = j;
+		}
+		if (adapted) {
+			clearAdaptation();
+		}
+		IntSet changed = new IntSet();
+		int p, first, t, corner, q;
+		for (i = 0; i < observations.size(); i++) {
+			p = removals[i];
+			v = vertex(p);
+			changed.add(p);
+			if (v.getNrDuplicates() > 0) {
+				v.removeDuplicate();
+				continue;
+			}
+			// All neighbours of p get a part of its cell
+			first = mesh.getTriangle(p);
+			t = first;
+			do {
+				corner = mesh.cornerOf(t, p);
+				q = mesh.getCorner(t, (corner + 1) % 3);
+				if (q >= TriangleMesh.SUPER) {
+					changed.add(q);
+				}
+				t = mesh.getNeighbour(t, (corner + 1) % 3);
+			} while (t != first);
+			mesh.remove(p);
+			removeFromList(p, v);
+			points.remove(v.x(), v.y());
+			meshVertices[p - TriangleMesh.SUPER] = null;
+			changed.remove(p);
+			v.getNeighbours().clear();
+			if (rings != null) {
+				rings.set(v.getID(), null, 0);
+			}
+		}
+		mesh.reportCounts();
+		return update(changed);
+	}
+
+	/**
+	 * Remove vertex v from the list of vertices in constant time, by moving
+	 * the last vertex of the list to its place. Positions are found again if
+	 * the list was reordered, for example sorted by GraphTheory.
+	 * 
+	 * @param p
+	 *            mesh vertex of v, still in the table of points
+	 * @param v
+	 *            vertex to be removed
+	 */
+	private void removeFromList(int p, Vertex v) {
+		int i = positions == null ? -1 : positions[p - TriangleMesh.SUPER];
+		if (i < 0 || i >= vertices.size() || vertices.get(i) != v) {
+			positions = new int[meshVertices.length];
+			for (int k = 0; k < vertices.size(); k++) {
+				positions[points.get(vertices.get(k).x(), vertices.get(k).y())
+						- TriangleMesh.SUPER] = k;
+			}
+			i = positions[p - TriangleMesh.SUPER];
+		}
+		Vertex last = vertices.remove(vertices.size() - 1);
+		if (last != v) {
+			vertices.set(i, last);
+			positions[points.get(last.x(), last.y()) - TriangleMesh.SUPER] = i;
+		}
+	}
+
+	/**
+	 * Create the table of points when it is needed for the first time
+	 * 
+	 * @param extra
+	 *            number of points that will be added
+	 * @return table of points, with mesh vertices as values
+	 */
+	private PointTable createPoints(int extra) {
+		if (points == null) {
+			points = new PointTable(mesh.getNrVertices() + extra);
+			for (int i = 0; i < mesh.getNrVertices() - TriangleMesh.SUPER; i++) {
+				if (meshVertices[i] != null) {
+					points.putIfAbsent(meshVertices[i].x(),
+							meshVertices[i].y(), i + TriangleMesh.SUPER);
+				}
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Update neighbours, neighbour rings and Voronoi cells of changed
+	 * vertices from the mesh
+	 * 
+	 * @param changed
+	 *            mesh vertices of which the cell changed
+	 * @return vertex objects of the changed vertices
+	 */
+	private List<Vertex> update(IntSet changed) {
+		List<Vertex> result = new ArrayList<Vertex>(changed.size());
+		int[] ring = new int[16];
+		double[] centre = new double[2];
+		int p, first, t, corner, q, nr;
+		Vertex v;
+		for (int k = 0; k < changed.size(); k++) {
+			p = changed.get(k);
+			v = vertex(p);
+			v.getNeighbours().clear();
+			nr = 0;
+			first = mesh.getTriangle(p);
+			t = first;
+			do {
+				corner = mesh.cornerOf(t, p);
+				q = mesh.getCorner(t, (corner + 2) % 3);
+				if (q >= TriangleMesh.SUPER) {
+					if (nr == ring.length) {
+						ring = Arrays.copyOf(ring, 2 * nr);
+					}
+					ring[nr++] = vertex(q).getID();
+					v.addNeighbour(vertex(q).getID());
+				}
+				t = mesh.getNeighbour(t, (corner + 1) % 3);
+			} while (t != first);
+			if (rings != null) {
+				rings.set(v.getID(), ring, nr);
+			}
+			if (voronoi) {
+				calcCell(p, centre);
+			}
+			result.add(v);
+		}
+		return result;
+	}
+
+	/**
+	 * Insert the vertex of one observation in the mesh, or add it as duplicate
+	 * 
+	 * @param v
+	 *            vertex of the observation
+	 * @param changed
+	 *            mesh vertices of which the cell changed
+	 */
+	private void insertVertex(Vertex v, IntSet changed) {
+		double x = v.x();
+		double y = v.y();
+		int p = mesh.getNrVertices();
+		int existing = points.putIfAbsent(x, y, p);
+		if (existing >= 0) {
+			vertex(existing).addDuplicate();
+			changed.add(existing);
+			return;
+		}
+		vertices.add(v);
+		bounds.add(x, y);
+		if (p - TriangleMesh.SUPER == meshVertices.length) {
+			meshVertices = Arrays.copyOf(meshVertices,
+					2 * meshVertices.length + 1);
+		}
+		meshVertices[p - TriangleMesh.SUPER] = v;
+		if (positions != null) {
+			if (positions.length < meshVertices.length) {
+				positions = Arrays.copyOf(positions, meshVertices.length);
+			}
+			positions[p - TriangleMesh.SUPER] = vertices.size() - 1;
+		}
+		mesh.insert(mesh.addVertex(x, y));
+
+		// All vertices of the cavity are neighbours of p
+		int first = mesh.getTriangle(p);
+		int t = first;
+		int corner, q;
+		changed.add(p);
+		do {
+			corner = mesh.cornerOf(t, p);
+			q = mesh.getCorner(t, (corner + 1) % 3);
+			if (q >= TriangleMesh.SUPER) {
+				changed.add(q);
+			}
+			t = mesh.getNeighbour(t, (corner + 1) % 3);
+		} while (t != first);
+	}
+
+	/**
+	 * Remove triangles and edges for drawing, they are created again from the
+	 * changed mesh when they are asked for
+	 */
+	private void clearAdaptation() {
+		adapted = false;
+		triangles.clear();
+		edges.clear();
+		nrEdges = 0;
+		for (Vertex v : vertices) {
+			v.getEdges().clear();
+			v.getVoronoiCell().clear();
+		}
+	}
+
+	/**
+	 * Get edges, creating triangles and edges when called for the first time
+	 * 
+	 * @return edges
+	 */
+	public Map<Integer, QuadEdge> getEdges() {
+		if (!adapted) {
+			adapt();
+			// Fill Voronoi cells for drawing
+			if (voronoi) {
+				super.calcVoronoi();
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Get area of triangulation
+	 * 
+	 * @return area of triangulation
+	 */
+	public double getArea() {
+		double area = 0.0;
+		for (int t = 0; t < mesh.getNrSlots(); t++) {
+			if (mesh.isTriangle(t) && !mesh.isSuper(t)) {
+				area += mesh.getArea(t);
+			}
+		}
+		return area;
+	}
+
+	/**
+	 * Get the mesh this triangulation is built on
+	 * 
+	 * @return mesh
+	 */
+	public TriangleMesh getMesh() {
+		return mesh;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Graph method to compute the HDR from the Voronoi cells
+ * 
+ * @author Joeri
+ * 
+ */
+public enum Method {
+
+	/**
+	 * Only the smallest cells, does not ensure connected graph without holes
+	 */
+	SIMPLE,
+
+	/**
+	 * Remove bound cells with biggest area, starting from all cells
+	 */
+	TOP_DOWN,
+
+	/**
+	 * Add neighbouring cells with smallest area, starting from the smallest
+	 * cell
+	 */
+	BOTTOM_UP
+}
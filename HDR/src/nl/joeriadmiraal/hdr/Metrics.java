@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Receives timings of the phases of the HDR computation and counts of the
+ * work done in them. The metrics in use are set with HdrMetrics, by default
+ * nothing is measured.
+ * 
+ * @author Joeri
+ * 
+ */
+public interface Metrics {
+
+	/**
+	 * Phases of the computation that are timed
+	 */
+	public enum Phase {
+		/**
+		 * Creating vertices of observations and finding duplicates
+		 */
+		INGESTION,
+		/**
+		 * Sorting vertices in insertion order
+		 */
+		SORTING,
+		/**
+		 * Creating the super triangle
+		 */
+		SUPER_TRIANGLE,
+		/**
+		 * Inserting vertices in the triangulation
+		 */
+		INSERTION,
+		/**
+		 * Removing the super triangle (Watson)
+		 */
+		REMOVE_SUPER,
+		/**
+		 * Calculating Voronoi cells
+		 */
+		VORONOI,
+		/**
+		 * Peeling cells off or adding cells to the HDR
+		 */
+		PEELING
+	}
+
+	/**
+	 * Work that is counted
+	 */
+	public enum Counter {
+		/**
+		 * Incircle tests while inserting or removing vertices
+		 */
+		INCIRCLE_TESTS,
+		/**
+		 * Vertices inserted in a triangulation
+		 */
+		INSERTED_VERTICES,
+		/**
+		 * Triangles in the cavities of inserted vertices, divide by
+		 * INSERTED_VERTICES for the mean cavity size
+		 */
+		CAVITY_TRIANGLES,
+		/**
+		 * Triangles created
+		 */
+		TRIANGLES_CREATED,
+		/**
+		 * Triangles removed
+		 */
+		TRIANGLES_REMOVED,
+		/**
+		 * Checks whether a cell can change state without making holes
+		 */
+		SWITCH_CHECKS
+	}
+
+	/**
+	 * Metrics that ignore everything
+	 */
+	public static final Metrics NONE = new Metrics() {
+		public void time(Phase phase, long nanos) {
+		}
+
+		public void count(Counter counter, long amount) {
+		}
+	};
+
+	/**
+	 * Add time spent in a phase
+	 * 
+	 * @param phase
+	 *            phase
+	 * @param nanos
+	 *            time in nanoseconds
+	 */
+	public void time(Phase phase, long nanos);
+
+	/**
+	 * Add to a counter
+	 * 
+	 * @param counter
+	 *            counter
+	 * @param amount
+	 *            amount to add
+	 */
+	public void count(Counter counter, long amount);
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Neighbours of all vertices in cyclic order, stored in one array. The
+ * neighbours of the vertex with id v are get(getStart(v)) up to
+ * get(getEnd(v)). Rings can be replaced when the triangulation changes, a
+ * longer ring is appended to the array and the array is compacted when more
+ * than half of it is unused.
+ * 
+ * @author Joeri
+ * 
+ */
+public class NeighbourRings {
+
+	// Position of the first neighbour of each id, and after the last
+	private int[] starts;
+	private int[] ends;
+	// Id's of neighbours
+	private int[] rings;
+	private int size;
+	private int nrIDs;
+	// Number of positions in use by a ring
+	private int used;
+
+	/**
+	 * Create empty rings for vertices with id's below nrIDs, to be filled
+	 * vertex by vertex with add
+	 * 
+	 * @param nrIDs
+	 *            one more than the highest id
+	 * @param nrNeighbours
+	 *            total number of neighbours of all vertices
+	 */
+	NeighbourRings(int nrIDs, int nrNeighbours) {
+		this.nrIDs = nrIDs;
+		starts = new int[nrIDs];
+		ends = new int[nrIDs];
+		rings = new int[nrNeighbours];
+	}
+
+	/**
+	 * Create rings stored one after another, like in a snapshot
+	 * 
+	 * @param ends
+	 *            position after the last neighbour of each id
+	 * @param rings
+	 *            id's of neighbours of all vertices
+	 */
+	NeighbourRings(int[] ends, int[] rings) {
+		nrIDs = ends.length;
+		starts = new int[nrIDs];
+		for (int id = 1; id < nrIDs; id++) {
+			starts[id] = ends[id - 1];
+		}
+		this.ends = ends;
+		this.rings = rings;
+		size = rings.length;
+		used = size;
+	}
+
+	/**
+	 * Create rings by sorting the neighbours of every vertex on angle
+	 * 
+	 * @param vertices
+	 *            vertices with their neighbours
+	 */
+	public NeighbourRings(List<Vertex> vertices) {
+		this(nrIDs(vertices), nrNeighbours(vertices));
+		Vertex[] byID = new Vertex[nrIDs];
+		for (Vertex v : vertices) {
+			byID[v.getID()] = v;
+		}
+		Vertex[] neighbours = new Vertex[0];
+		int nr;
+		for (int id = 0; id < byID.length; id++) {
+			if (byID[id] == null) {
+				add(id, null, 0);
+				continue;
+			}
+			nr = byID[id].getNeighbours().size();
+			if (neighbours.length < nr) {
+				neighbours = new Vertex[2 * nr];
+			}
+			for (int i = 0; i < nr; i++) {
+				neighbours[i] = byID[byID[id].getNeighbours().get(i)];
+			}
+			Arrays.sort(neighbours, 0, nr, clockwise(byID[id]));
+			starts[id] = size;
+			for (int i = 0; i < nr; i++) {
+				rings[size++] = neighbours[i].getID();
+			}
+			ends[id] = size;
+			used += nr;
+		}
+	}
+
+	/**
+	 * Add the neighbours of the vertex with the next id
+	 * 
+	 * @param id
+	 *            id of the vertex, one more than the previous id
+	 * @param neighbours
+	 *            id's of neighbours in cyclic order
+	 * @param nr
+	 *            number of neighbours
+	 */
+	void add(int id, int[] neighbours, int nr) {
+		starts[id] = size;
+		if (nr > 0) {
+			System.arraycopy(neighbours, 0, rings, size, nr);
+			size += nr;
+		}
+		ends[id] = size;
+		used += nr;
+	}
+
+	/**
+	 * Replace the neighbours of a vertex. A vertex with a new id gets a ring,
+	 * id's in between get empty rings.
+	 * 
+	 * @param id
+	 *            id of the vertex
+	 * @param neighbours
+	 *            id's of neighbours in cyclic order, may be null if nr is 0
+	 * @param nr
+	 *            number of neighbours
+	 */
+	void set(int id, int[] neighbours, int nr) {
+		if (id >= nrIDs) {
+			if (id >= starts.length) {
+				int length = Math.max(id + 1, 2 * starts.length);
+				starts = Arrays.copyOf(starts, length);
+				ends = Arrays.copyOf(ends, length);
+			}
+			nrIDs = id + 1;
+		}
+		used += nr - (ends[id] - starts[id]);
+		if (nr > ends[id] - starts[id]) {
+			// Ring does not fit in its old place
+			if (size + nr > rings.length) {
+				if (2 * used < size) {
+					compact(nr);
+				} else {
+					rings = Arrays.copyOf(rings,
+							Math.max(size + nr, 2 * rings.length));
+				}
+			}
+			starts[id] = size;
+			size += nr;
+		}
+		if (nr > 0) {
+			System.arraycopy(neighbours, 0, rings, starts[id], nr);
+		}
+		ends[id] = starts[id] + nr;
+	}
+
+	/**
+	 * Move all rings to the front of a new array, leaving out unused
+	 * positions
+	 * 
+	 * @param extra
+	 *            number of positions needed after the rings
+	 */
+	private void compact(int extra) {
+		int[] old = rings;
+		rings = new int[Math.max(16, 2 * (used + extra))];
+		size = 0;
+		int nr;
+		for (int id = 0; id < nrIDs; id++) {
+			nr = ends[id] - starts[id];
+			System.arraycopy(old, starts[id], rings, size, nr);
+			starts[id] = size;
+			size += nr;
+			ends[id] = size;
+		}
+	}
+
+	/**
+	 * Get one more than the highest id of a vertex
+	 * 
+	 * @return number of id's
+	 */
+	public int getNrIDs() {
+		return nrIDs;
+	}
+
+	/**
+	 * Get position of the first neighbour of a vertex
+	 * 
+	 * @param id
+	 *            id of the vertex
+	 * @return position of first neighbour
+	 */
+	public int getStart(int id) {
+		return starts[id];
+	}
+
+	/**
+	 * Get position after the last neighbour of a vertex
+	 * 
+	 * @param id
+	 *            id of the vertex
+	 * @return position after last neighbour
+	 */
+	public int getEnd(int id) {
+		return ends[id];
+	}
+
+	/**
+	 * Get id of the neighbour at position i
+	 * 
+	 * @param i
+	 *            position
+	 * @return id of neighbour
+	 */
+	public int get(int i) {
+		return rings[i];
+	}
+
+	/**
+	 * Get one more than the highest id of the vertices
+	 * 
+	 * @param vertices
+	 *            vertices
+	 * @return number of id's
+	 */
+	static int nrIDs(List<Vertex> vertices) {
+		int max = -1;
+		for (Vertex v : vertices) {
+			max = Math.max(max, v.getID());
+		}
+		return max + 1;
+	}
+
+	/**
+	 * Get total number of neighbours of the vertices
+	 * 
+	 * @param vertices
+	 *            vertices
+	 * @return number of neighbours
+	 */
+	static int nrNeighbours(List<Vertex> vertices) {
+		int nr = 0;
+		for (Vertex v : vertices) {
+			nr += v.getNeighbours().size();
+		}
+		return nr;
+	}
+
+	/**
+	 * Get comparator sorting vertices in clockwise order around a centre,
+	 * starting at 12 o'clock
+	 * 
+	 * @param centre
+	 *            vertex to sort around
+	 * @return comparator
+	 */
+	private static Comparator<Vertex> clockwise(Vertex centre) {
+		final double mx = centre.x();
+		final double my = centre.y();
+		return new Comparator<Vertex>() {
+			public int compare(Vertex a, Vertex b) {
+				// Check if one part is in left part and other in right part (of
+				// clock)
+				if (a.x() >= mx && b.x() < mx) {
+					return -1;
+				}
+				if (a.x() <= mx && b.x() > mx) {
+					return 1;
+				}
+				if (a.x() == mx && b.x() == mx) {
+					if (a.y() > b.y()) {
+						return -1;
+					} else {
+						return 1;
+					}
+				}
+				// Otherwise, compute the cross product of vectors
+				double det = (a.x() - mx) * (b.y() - my) - (b.x() - mx)
+						* (a.y() - my);
+				if (det > 0) {
+					return 1;
+				} else {
+					return -1;
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates normally distributed observations in parallel, like SampleNormal.
+ * Observations are generated in chunks, every chunk from its own random
+ * generator split from the generator of the seed, so the observations only
+ * depend on the seed and not on the number of threads. Files are written
+ * chunk by chunk while the next chunks are generated, so the observations
+ * are never all in memory.
+ * 
+ * @author Joeri
+ * 
+ */
+public class ObservationGenerator {
+
+	/**
+	 * Number of observations generated from one random generator
+	 */
+	public static final int CHUNK = 1 << 16;
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private final double[][] parameters;
+	private final boolean independent;
+	private final long seed;
+
+	/**
+	 * Create generator
+	 * 
+	 * @param parameters
+	 *            mean and standard deviation of x in the first row and of y
+	 *            in the second row
+	 * @param independent
+	 *            false if |x| is added to y
+	 * @param seed
+	 *            seed of the random generators
+	 */
+	public ObservationGenerator(double[][] parameters, boolean independent,
+			long seed) {
+		this.parameters = parameters;
+		this.independent = independent;
+		this.seed = seed;
+	}
+
+	/**
+	 * Generate observations in memory
+	 * 
+	 * @param n
+	 *            number of observations
+	 * @param pool
+	 *            pool to generate chunks in
+	 * @return observations with x-coord in first column and y-coord in second
+	 *         column
+	 */
+	public double[][] generate(int n, ForkJoinPool pool) {
+		double[][] observations = new double[n][2];
+		Pipeline pipeline = new Pipeline(n, false, pool);
+		ChunkTask task;
+		while ((task = pipeline.next()) != null) {
+			for (int i = 0; i < task.nr; i++) {
+				observations[(int) task.start + i][0] = task.xs[i];
+				observations[(int) task.start + i][1] = task.ys[i];
+			}
+		}
+		return observations;
+	}
+
+	/**
+	 * Write observations to a text file, readable by ObservationParser. Each
+	 * line has both coordinates followed by a tab, like the files of
+	 * SampleNormal.
+	 * 
+	 * @param n
+	 *            number of observations
+	 * @param fileName
+	 *            name of the file
+	 * @param pool
+	 *            pool to generate and format chunks in
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public void writeText(long n, String fileName, ForkJoinPool pool)
+			throws IOException {
+		FileChannel channel = create(fileName);
+		try {
+			Pipeline pipeline = new Pipeline(n, true, pool);
+			ChunkTask task;
+			while ((task = pipeline.next()) != null) {
+				write(channel, ByteBuffer.wrap(task.text));
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Write observations to a binary file, readable by BinaryObservations.
+	 * Every chunk is written at its place in both columns.
+	 * 
+	 * @param n
+	 *            number of observations, at most Integer.MAX_VALUE
+	 * @param fileName
+	 *            name of the file
+	 * @param pool
+	 *            pool to generate chunks in
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public void writeBinary(long n, String fileName, ForkJoinPool pool)
+			throws IOException {
+		if (n > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many observations: " + n);
+		}
+		FileChannel channel = create(fileName);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(8 * CHUNK).order(
+					ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(BinaryObservations.MAGIC);
+			buffer.putInt(BinaryObservations.VERSION);
+			buffer.putLong(n);
+			buffer.flip();
+			write(channel, buffer);
+			long header = channel.position();
+			Pipeline pipeline = new Pipeline(n, false, pool);
+			ChunkTask task;
+			while ((task = pipeline.next()) != null) {
+				buffer.clear();
+				buffer.asDoubleBuffer().put(task.xs, 0, task.nr);
+				buffer.limit(8 * task.nr);
+				channel.position(header + 8 * task.start);
+				write(channel, buffer);
+				buffer.clear();
+				buffer.asDoubleBuffer().put(task.ys, 0, task.nr);
+				buffer.limit(8 * task.nr);
+				channel.position(header + 8 * (n + task.start));
+				write(channel, buffer);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Open file for writing, removing its contents
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @return channel of the file
+	 */
+	private static FileChannel create(String fileName) throws IOException {
+		return FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Write all bytes of buffer to channel
+	 * 
+	 * @param channel
+	 *            channel to write to
+	 * @param buffer
+	 *            buffer to write
+	 */
+	private static void write(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Chunks in order, generated a few chunks ahead in the pool
+	 */
+	private class Pipeline {
+
+		private final long n;
+		private final boolean format;
+		private final ForkJoinPool pool;
+		private final SplittableRandom root = new SplittableRandom(seed);
+		private final ArrayDeque<ChunkTask> running = new ArrayDeque<ChunkTask>();
+		private final int ahead;
+		private long next = 0;
+
+		Pipeline(long n, boolean format, ForkJoinPool pool) {
+			this.n = n;
+			this.format = format;
+			this.pool = pool;
+			ahead = 2 * pool.getParallelism();
+		}
+
+		/**
+		 * Wait for the next chunk, after starting chunks after it
+		 * 
+		 * @return next chunk, null if all chunks are done
+		 */
+		ChunkTask next() {
+			while (next < n && running.size() < ahead) {
+				ChunkTask task = new ChunkTask(root.split(), next,
+						(int) Math.min(CHUNK, n - next), format);
+				pool.execute(task);
+				running.add(task);
+				next += task.nr;
+			}
+			ChunkTask task = running.poll();
+			if (task != null) {
+				task.join();
+			}
+			return task;
+		}
+	}
+
+	/**
+	 * Task generating a chunk of observations, and formatting them as text if
+	 * needed
+	 */
+	private class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SplittableRandom random;
+		final long start;
+		final int nr;
+		private final boolean format;
+		final double[] xs;
+		final double[] ys;
+		byte[] text;
+
+		ChunkTask(SplittableRandom random, long start, int nr, boolean format) {
+			this.random = random;
+			this.start = start;
+			this.nr = nr;
+			this.format = format;
+			xs = new double[nr];
+			ys = new double[nr];
+		}
+
+		protected void compute() {
+			double u, v, s, f;
+			for (int i = 0; i < nr; i++) {
+				// Two standard normal numbers with the polar method
+				do {
+					u = 2.0 * random.nextDouble() - 1.0;
+					v = 2.0 * random.nextDouble() - 1.0;
+					s = u * u + v * v;
+				} while (s >= 1.0 || s == 0.0);
+				f = Math.sqrt(-2.0 * Math.log(s) / s);
+				xs[i] = parameters[0][0] + parameters[0][1] * u * f;
+				ys[i] = parameters[1][0] + parameters[1][1] * v * f;
+				if (!independent) {
+					ys[i] += Math.abs(xs[i]);
+				}
+			}
+			if (format) {
+				StringBuilder lines = new StringBuilder(48 * nr);
+				for (int i = 0; i < nr; i++) {
+					lines.append(xs[i]).append('\t').append(ys[i])
+							.append("\t\r\n");
+				}
+				text = lines.toString().getBytes(ASCII);
+			}
+		}
+	}
+
+	/**
+	 * Write normally distributed observations to a file, with the parameters
+	 * of Main. Arguments are the number of observations, the name of the file
+	 * (binary if it ends with .bin, text otherwise) and optionally the seed.
+	 * 
+	 * @param args
+	 *            arguments
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		long n = Long.parseLong(args[0]);
+		String fileName = args[1];
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System
+				.nanoTime();
+		double[][] parameters = { { 0.0, 2.0 }, { 0.0, 1.0 } };
+		ObservationGenerator generator = new ObservationGenerator(parameters,
+				true, seed);
+		ForkJoinPool pool = new ForkJoinPool();
+		long start = System.currentTimeMillis();
+		try {
+			if (fileName.endsWith(".bin")) {
+				generator.writeBinary(n, fileName, pool);
+			} else {
+				generator.writeText(n, fileName, pool);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		System.out.println(n + " observations with seed " + seed + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming parser of text files with observations. Each observation is on an
+ * own line with two coordinates, seperated by tabs or spaces. Trailing tabs
+ * and \r\n line ends are allowed. Bytes are read in a buffer and coordinates
+ * are parsed in place, without creating strings. Numbers are converted
+ * exactly with the fast path of Clinger or the algorithm of Eisel and Lemire,
+ * the few numbers they can not convert are given to Double.parseDouble.
+ * 
+ * @author Joeri
+ * 
+ */
+public class ObservationParser {
+
+	private static final int BUFFER = 1 << 16;
+	// Longest line that can be parsed
+	private static final int MAX_LINE = 1 << 12;
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	// Exact powers of ten for the fast path
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	// Range of decimal exponents in the table of powers of five
+	private static final int MIN_POWER = -342;
+	private static final int MAX_POWER = 308;
+	// Most significant 128 bits of 5^q, high and low half after each other
+	private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+	private InputStream in;
+	private byte[] buffer = new byte[BUFFER];
+	private int position;
+	private int limit;
+	private boolean end;
+	private int line;
+
+	/**
+	 * Create parser reading from a stream
+	 * 
+	 * @param in
+	 *            stream with observations
+	 */
+	public ObservationParser(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Read observations from a text file
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @return observations
+	 * @throws IOException
+	 *             if the file can not be read or contains an invalid line
+	 */
+	public static ArrayObservations read(String fileName) throws IOException {
+		FileInputStream in = new FileInputStream(fileName);
+		try {
+			// Lines of SampleNormal are about 40 bytes long
+			ArrayObservations observations = new ArrayObservations(
+					(int) Math.min(Integer.MAX_VALUE - 8, in.getChannel()
+							.size() / 40 + 16));
+			new ObservationParser(in).parse(observations);
+			return observations;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parse all lines of the stream
+	 * 
+	 * @param observations
+	 *            observations to add the coordinates to
+	 * @throws IOException
+	 *             if the stream can not be read or contains an invalid line
+	 */
+	public void parse(ArrayObservations observations) throws IOException {
+		double x, y;
+		while (fill()) {
+			line++;
+			skipSeparators();
+			if (isLineEnd()) {
+				// Empty line
+				skipLine();
+				continue;
+			}
+			x = parseNumber();
+			skipSeparators();
+			y = parseNumber();
+			skipLine();
+			observations.add(x, y);
+		}
+	}
+
+	/**
+	 * Make sure at least MAX_LINE bytes are in the buffer, or all remaining
+	 * bytes of the stream, so that the next line is completely in the buffer
+	 * 
+	 * @return false if there are no more bytes
+	 */
+	private boolean fill() throws IOException {
+		if (limit - position >= MAX_LINE || end) {
+			return position < limit;
+		}
+		// Move remaining bytes to the start and read more
+		System.arraycopy(buffer, position, buffer, 0, limit - position);
+		limit -= position;
+		position = 0;
+		int read;
+		while (limit < buffer.length) {
+			read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				end = true;
+				break;
+			}
+			limit += read;
+		}
+		return position < limit;
+	}
+
+	/**
+	 * Skip tabs and spaces
+	 */
+	private void skipSeparators() {
+		while (position < limit
+				&& (buffer[position] == '\t' || buffer[position] == ' ')) {
+			position++;
+		}
+	}
+
+	/**
+	 * Check whether position is at the end of a line
+	 * 
+	 * @return true at \r, \n or the end of the stream
+	 */
+	private boolean isLineEnd() {
+		return position == limit || buffer[position] == '\n'
+				|| buffer[position] == '\r';
+	}
+
+	/**
+	 * Skip the rest of the line, including the line end
+	 */
+	private void skipLine() throws IOException {
+		while (position < limit && buffer[position] != '\n') {
+			position++;
+		}
+		if (position == limit && !end) {
+			throw new IOException("Line " + line + " is too long");
+		}
+		if (position < limit) {
+			position++;
+		}
+	}
+
+	/**
+	 * Parse number at position, up to the next tab, space or line end
+	 * 
+	 * @return the number
+	 */
+	private double parseNumber() throws IOException {
+		int start = position;
+		while (position < limit && buffer[position] != '\t'
+				&& buffer[position] != ' ' && buffer[position] != '\r'
+				&& buffer[position] != '\n') {
+			position++;
+		}
+		if (start == position) {
+			throw new IOException("Missing coordinate on line " + line);
+		}
+		if (position == limit && !end) {
+			throw new IOException("Line " + line + " is too long");
+		}
+		try {
+			return parseDouble(buffer, start, position);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid coordinate on line " + line + ": "
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Parse a decimal number. Gives the same result as Double.parseDouble.
+	 * 
+	 * @param bytes
+	 *            characters of the number
+	 * @param start
+	 *            position of the first character
+	 * @param end
+	 *            position after the last character
+	 * @return the number
+	 * @throws NumberFormatException
+	 *             if the characters are not a number
+	 */
+	static double parseDouble(byte[] bytes, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+		// Significant digits, at most 19 fit in an unsigned long
+		long significand = 0;
+		int nrDigits = 0;
+		int exponent = 0;
+		boolean digits = false;
+		boolean truncated = false;
+		byte c;
+		while (i < end && (c = bytes[i]) >= '0' && c <= '9') {
+			digits = true;
+			if (nrDigits < 19) {
+				significand = 10 * significand + (c - '0');
+				if (significand != 0) {
+					nrDigits++;
+				}
+			} else {
+				truncated |= c != '0';
+				exponent++;
+			}
+			i++;
+		}
+		if (i < end && bytes[i] == '.') {
+			i++;
+			while (i < end && (c = bytes[i]) >= '0' && c <= '9') {
+				digits = true;
+				if (nrDigits < 19) {
+					significand = 10 * significand + (c - '0');
+					if (significand != 0) {
+						nrDigits++;
+					}
+					exponent--;
+				} else {
+					truncated |= c != '0';
+				}
+				i++;
+			}
+		}
+		if (digits && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+				negativeExponent = bytes[i] == '-';
+				i++;
+			}
+			int value = 0;
+			boolean exponentDigits = false;
+			while (i < end && (c = bytes[i]) >= '0' && c <= '9') {
+				exponentDigits = true;
+				// Larger exponents are out of range anyway
+				if (value < 100000) {
+					value = 10 * value + (c - '0');
+				}
+				i++;
+			}
+			if (!exponentDigits) {
+				digits = false;
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+		if (!digits || i != end || truncated) {
+			// Not a plain decimal number, or too many digits
+			return fallback(bytes, start, end);
+		}
+		double value;
+		if (significand == 0) {
+			value = 0.0;
+		} else if (significand > 0 && significand <= 1L << 53
+				&& exponent >= -22
+				&& exponent <= 22) {
+			// Fast path of Clinger: both numbers are exact, so there is only
+			// one rounding
+			if (exponent < 0) {
+				value = significand / POWERS_OF_TEN[-exponent];
+			} else {
+				value = significand * POWERS_OF_TEN[exponent];
+			}
+		} else {
+			long bits = eiselLemire(significand, exponent);
+			if (bits < 0) {
+				return fallback(bytes, start, end);
+			}
+			value = Double.longBitsToDouble(bits);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse number with Double.parseDouble
+	 * 
+	 * @param bytes
+	 *            characters of the number
+	 * @param start
+	 *            position of the first character
+	 * @param end
+	 *            position after the last character
+	 * @return the number
+	 */
+	private static double fallback(byte[] bytes, int start, int end) {
+		return Double.parseDouble(new String(bytes, start, end - start, ASCII));
+	}
+
+	/**
+	 * Convert w * 10^q to the nearest double with the algorithm of Eisel and
+	 * Lemire, multiplying w by a 128 bit approximation of 5^q
+	 * 
+	 * @param w
+	 *            significand, not 0, unsigned
+	 * @param q
+	 *            decimal exponent
+	 * @return bits of the positive double, or -1 if it can not be determined
+	 *         (out of range, subnormal or ambiguous)
+	 */
+	private static long eiselLemire(long w, int q) {
+		if (q < MIN_POWER || q > MAX_POWER) {
+			return -1;
+		}
+		int lz = Long.numberOfLeadingZeros(w);
+		w <<= lz;
+		int index = 2 * (q - MIN_POWER);
+		long high = POWERS_OF_FIVE[index];
+		long productHigh = multiplyHigh(w, high);
+		long productLow = w * high;
+		// Use the low half of the power when the product is not precise
+		// enough for 55 bits
+		if ((productHigh & 0x1FF) == 0x1FF) {
+			long low = POWERS_OF_FIVE[index + 1];
+			long secondHigh = multiplyHigh(w, low);
+			productLow += secondHigh;
+			if (lessUnsigned(productLow, secondHigh)) {
+				productHigh++;
+			}
+		}
+		if (productLow == -1L && (q < -27 || q > 55)) {
+			// Product may be too small
+			return -1;
+		}
+		int upperBit = (int) (productHigh >>> 63);
+		long mantissa = productHigh >>> (upperBit + 9);
+		int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz
+				+ 1023;
+		if (power2 <= 0) {
+			// Subnormal
+			return -1;
+		}
+		// Round to even when exactly halfway
+		if ((productLow == 0 || productLow == 1) && q >= -4 && q <= 23
+				&& (mantissa & 3) == 1
+				&& (mantissa << (upperBit + 9)) == productHigh) {
+			mantissa &= ~1L;
+		}
+		mantissa += mantissa & 1;
+		mantissa >>>= 1;
+		if (mantissa >= 2L << 52) {
+			mantissa = 1L << 52;
+			power2++;
+		}
+		mantissa &= ~(1L << 52);
+		if (power2 >= 0x7FF) {
+			// Infinity
+			return -1;
+		}
+		return mantissa | ((long) power2 << 52);
+	}
+
+	/**
+	 * Compare unsigned numbers
+	 * 
+	 * @param a
+	 *            unsigned number
+	 * @param b
+	 *            unsigned number
+	 * @return true if a is less than b
+	 */
+	private static boolean lessUnsigned(long a, long b) {
+		return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+	}
+
+	/**
+	 * Get the high 64 bits of the unsigned 128 bit product of a and b
+	 * 
+	 * @param a
+	 *            unsigned factor
+	 * @param b
+	 *            unsigned factor
+	 * @return high half of the product
+	 */
+	private static long multiplyHigh(long a, long b) {
+		long aLow = a & 0xFFFFFFFFL;
+		long aHigh = a >>> 32;
+		long bLow = b & 0xFFFFFFFFL;
+		long bHigh = b >>> 32;
+		long lowLow = aLow * bLow;
+		long highLow = aHigh * bLow;
+		long lowHigh = aLow * bHigh;
+		long highHigh = aHigh * bHigh;
+		long middle = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL)
+				+ (lowHigh & 0xFFFFFFFFL);
+		return highHigh + (highLow >>> 32) + (lowHigh >>> 32) + (middle >>> 32);
+	}
+
+	/**
+	 * Calculate the most significant 128 bits of 5^q for all q in the range.
+	 * For negative q the reciprocal is rounded up.
+	 * 
+	 * @return high and low half of each power
+	 */
+	private static long[] powersOfFive() {
+		long[] powers = new long[2 * (MAX_POWER - MIN_POWER + 1)];
+		BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+		BigInteger five = BigInteger.valueOf(5);
+		BigInteger power, c;
+		int z, b;
+		for (int q = MIN_POWER; q <= MAX_POWER; q++) {
+			if (q < 0) {
+				power = five.pow(-q);
+				// 5^-q is no power of two, so this is the smallest z with
+				// 2^z > 5^-q
+				z = power.bitLength();
+				b = q >= -27 ? z + 127 : 2 * z + 128;
+				c = BigInteger.ONE.shiftLeft(b).divide(power)
+						.add(BigInteger.ONE);
+				while (c.compareTo(two128) >= 0) {
+					c = c.shiftRight(1);
+				}
+			} else {
+				c = five.pow(q);
+				if (c.bitLength() < 128) {
+					c = c.shiftLeft(128 - c.bitLength());
+				} else {
+					c = c.shiftRight(c.bitLength() - 128);
+				}
+			}
+			powers[2 * (q - MIN_POWER)] = c.shiftRight(64).longValue();
+			powers[2 * (q - MIN_POWER) + 1] = c.longValue();
+		}
+		return powers;
+	}
+}
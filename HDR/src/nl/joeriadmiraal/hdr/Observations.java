@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Observations with x and y coordinates, stored by column
+ * 
+ * @author Joeri
+ * 
+ */
+public interface Observations {
+
+	/**
+	 * Get number of observations
+	 * 
+	 * @return number of observations
+	 */
+	public int size();
+
+	/**
+	 * Get x-coordinate of observation i
+	 * 
+	 * @param i
+	 *            index of observation
+	 * @return x-coordinate
+	 */
+	public double x(int i);
+
+	/**
+	 * Get y-coordinate of observation i
+	 * 
+	 * @param i
+	 *            index of observation
+	 * @return y-coordinate
+	 */
+	public double y(int i);
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Arrays;
+
+/**
+ * Hash table from points to ints without boxing, used to find duplicate
+ * observations. Points are equal when the bits of both coordinates are
+ * equal, -0.0 and 0.0 count as the same coordinate. Uses open addressing
+ * with linear probing, removed points are filled up by shifting later points
+ * back.
+ * 
+ * @author Joeri
+ * 
+ */
+public class PointTable {
+
+	// Marks an empty place
+	private static final int EMPTY = -1;
+
+	private long[] xs;
+	private long[] ys;
+	private int[] values;
+	private int size;
+
+	/**
+	 * Create empty table
+	 * 
+	 * @param capacity
+	 *            expected number of points
+	 */
+	public PointTable(int capacity) {
+		int length = Integer.highestOneBit(Math.max(4, capacity) * 2 - 1) * 2;
+		xs = new long[length];
+		ys = new long[length];
+		values = new int[length];
+		Arrays.fill(values, EMPTY);
+	}
+
+	/**
+	 * Get value of a point, or add the point with a value if it is not in the
+	 * table
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 * @param value
+	 *            value to add, not negative
+	 * @return value of the point if it was already in the table, -1 if it was
+	 *         added
+	 */
+	public int putIfAbsent(double x, double y, int value) {
+		long xBits = bits(x);
+		long yBits = bits(y);
+		int mask = values.length - 1;
+		int i = hash(xBits, yBits) & mask;
+		while (values[i] != EMPTY) {
+			if (xs[i] == xBits && ys[i] == yBits) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		xs[i] = xBits;
+		ys[i] = yBits;
+		values[i] = value;
+		if (++size > values.length / 2) {
+			grow();
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Get value of a point
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 * @return value of the point, -1 if it is not in the table
+	 */
+	public int get(double x, double y) {
+		int i = find(bits(x), bits(y));
+		return i < 0 ? EMPTY : values[i];
+	}
+
+	/**
+	 * Remove a point from the table
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 * @return value of the point, -1 if it was not in the table
+	 */
+	public int remove(double x, double y) {
+		int i = find(bits(x), bits(y));
+		if (i < 0) {
+			return EMPTY;
+		}
+		int value = values[i];
+		// Move later points of the probe sequence back into the gap, unless
+		// their home place is after the gap
+		int mask = values.length - 1;
+		int j = i;
+		int home;
+		while (true) {
+			j = (j + 1) & mask;
+			if (values[j] == EMPTY) {
+				break;
+			}
+			home = hash(xs[j], ys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				xs[i] = xs[j];
+				ys[i] = ys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = EMPTY;
+		size--;
+		return value;
+	}
+
+	/**
+	 * Get number of points in the table
+	 * 
+	 * @return number of points
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find place of a point
+	 * 
+	 * @param xBits
+	 *            bits of x-coordinate
+	 * @param yBits
+	 *            bits of y-coordinate
+	 * @return place of the point, -1 if it is not in the table
+	 */
+	private int find(long xBits, long yBits) {
+		int mask = values.length - 1;
+		int i = hash(xBits, yBits) & mask;
+		while (values[i] != EMPTY) {
+			if (xs[i] == xBits && ys[i] == yBits) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Double the length of the table
+	 */
+	private void grow() {
+		long[] oldXs = xs;
+		long[] oldYs = ys;
+		int[] oldValues = values;
+		xs = new long[2 * oldValues.length];
+		ys = new long[2 * oldValues.length];
+		values = new int[2 * oldValues.length];
+		Arrays.fill(values, EMPTY);
+		int mask = values.length - 1;
+		int i;
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] != EMPTY) {
+				i = hash(oldXs[j], oldYs[j]) & mask;
+				while (values[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				xs[i] = oldXs[j];
+				ys[i] = oldYs[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * Get bits of a coordinate, the same for -0.0 and 0.0
+	 * 
+	 * @param c
+	 *            coordinate
+	 * @return bits of the coordinate
+	 */
+	private static long bits(double c) {
+		return Double.doubleToLongBits(c + 0.0);
+	}
+
+	/**
+	 * Mix bits of both coordinates
+	 * 
+	 * @param xBits
+	 *            bits of x-coordinate
+	 * @param yBits
+	 *            bits of y-coordinate
+	 * @return hash code
+	 */
+	private static int hash(long xBits, long yBits) {
+		long h = xBits * 0x9E3779B97F4A7C15L + yBits;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+	}
+}
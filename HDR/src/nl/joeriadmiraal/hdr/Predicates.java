@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * Geometric predicates for the Delaunay triangulation. Both predicates first
+ * evaluate the determinant in floating point and compare it to a bound on its
+ * rounding error (Shewchuk). Only when the sign is not certain, the
+ * determinant is evaluated exactly with floating point expansions.
+ * 
+ * @author Joeri
+ * 
+ */
+public class Predicates {
+
+	// Half of the distance between 1.0 and the next double
+	private static final double EPSILON = Math.ulp(1.0) / 2.0;
+	// Splits a double into two halves of 26 bits
+	private static final double SPLITTER = (1 << 27) + 1.0;
+	private static final double CCW_BOUND = (3.0 + 16.0 * EPSILON) * EPSILON;
+	private static final double ICC_BOUND = (10.0 + 96.0 * EPSILON)
+			* EPSILON;
+
+	/**
+	 * Calculate orientation of c with respect to the line from a to b
+	 * 
+	 * @return positive if a, b and c are counterclockwise, negative if they
+	 *         are clockwise and zero if they are collinear
+	 */
+	public static double orient2d(double ax, double ay, double bx, double by,
+			double cx, double cy) {
+		double detLeft = (ax - cx) * (by - cy);
+		double detRight = (ay - cy) * (bx - cx);
+		double det = detLeft - detRight;
+		double detSum;
+		if (detLeft > 0.0) {
+			if (detRight <= 0.0) {
+				return det;
+			}
+			detSum = detLeft + detRight;
+		} else if (detLeft < 0.0) {
+			if (detRight >= 0.0) {
+				return det;
+			}
+			detSum = -detLeft - detRight;
+		} else {
+			return det;
+		}
+		double bound = CCW_BOUND * detSum;
+		if (det >= bound || -det >= bound) {
+			return det;
+		}
+		return orient2dExact(ax, ay, bx, by, cx, cy);
+	}
+
+	/**
+	 * Check position of d with respect to the circle through a, b and c
+	 * 
+	 * @return positive if d is inside the circle and a, b and c are
+	 *         counterclockwise, negative if d is outside (sign reverses when a,
+	 *         b and c are clockwise) and zero if the four points are
+	 *         cocircular
+	 */
+	public static double incircle(double ax, double ay, double bx,
+			double by, double cx, double cy, double dx, double dy) {
+		double adx = ax - dx;
+		double bdx = bx - dx;
+		double cdx = cx - dx;
+		double ady = ay - dy;
+		double bdy = by - dy;
+		double cdy = cy - dy;
+
+		double bdxcdy = bdx * cdy;
+		double cdxbdy = cdx * bdy;
+		double aLift = adx * adx + ady * ady;
+
+		double cdxady = cdx * ady;
+		double adxcdy = adx * cdy;
+		double bLift = bdx * bdx + bdy * bdy;
+
+		double adxbdy = adx * bdy;
+		double bdxady = bdx * ady;
+		double cLift = cdx * cdx + cdy * cdy;
+
+		double det = aLift * (bdxcdy - cdxbdy) + bLift * (cdxady - adxcdy)
+				+ cLift * (adxbdy - bdxady);
+		double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * aLift
+				+ (Math.abs(cdxady) + Math.abs(adxcdy)) * bLift
+				+ (Math.abs(adxbdy) + Math.abs(bdxady)) * cLift;
+		double bound = ICC_BOUND * permanent;
+		if (det > bound || -det > bound) {
+			return det;
+		}
+		return incircleExact(ax, ay, bx, by, cx, cy, dx, dy);
+	}
+
+	/**
+	 * Exact orientation, see orient2d
+	 */
+	private static double orient2dExact(double ax, double ay, double bx,
+			double by, double cx, double cy) {
+		double[] acx = difference(ax, cx);
+		double[] acy = difference(ay, cy);
+		double[] bcx = difference(bx, cx);
+		double[] bcy = difference(by, cy);
+		double[] det = sum(product(acx, bcy), negate(product(acy, bcx)));
+		return det[det.length - 1];
+	}
+
+	/**
+	 * Exact incircle test, see incircle
+	 */
+	private static double incircleExact(double ax, double ay, double bx,
+			double by, double cx, double cy, double dx, double dy) {
+		double[] adx = difference(ax, dx);
+		double[] bdx = difference(bx, dx);
+		double[] cdx = difference(cx, dx);
+		double[] ady = difference(ay, dy);
+		double[] bdy = difference(by, dy);
+		double[] cdy = difference(cy, dy);
+
+		double[] aLift = sum(product(adx, adx), product(ady, ady));
+		double[] bLift = sum(product(bdx, bdx), product(bdy, bdy));
+		double[] cLift = sum(product(cdx, cdx), product(cdy, cdy));
+
+		double[] bc = sum(product(bdx, cdy), negate(product(cdx, bdy)));
+		double[] ca = sum(product(cdx, ady), negate(product(adx, cdy)));
+		double[] ab = sum(product(adx, bdy), negate(product(bdx, ady)));
+
+		double[] det = sum(sum(product(aLift, bc), product(bLift, ca)),
+				product(cLift, ab));
+		return det[det.length - 1];
+	}
+
+	// Expansions are arrays of non-overlapping doubles in order of increasing
+	// magnitude, their exact sum is the represented value. Zero components are
+	// left out, zero is represented by the expansion {0.0}.
+
+	/**
+	 * Calculate a - b exactly
+	 * 
+	 * @return expansion of a - b
+	 */
+	private static double[] difference(double a, double b) {
+		double x = a - b;
+		double bVirtual = a - x;
+		double aVirtual = x + bVirtual;
+		double bRound = bVirtual - b;
+		double aRound = a - aVirtual;
+		double y = aRound + bRound;
+		return compress(new double[] { y, x }, 2);
+	}
+
+	/**
+	 * Calculate sum of expansions e and f exactly
+	 * 
+	 * @return expansion of e + f
+	 */
+	private static double[] sum(double[] e, double[] f) {
+		double[] h = new double[e.length + f.length];
+		int length = e.length;
+		System.arraycopy(e, 0, h, 0, length);
+		double[] g = new double[h.length];
+		int nr;
+		double q, x, bVirtual, aVirtual;
+		// Add components of f one by one to h
+		for (int j = 0; j < f.length; j++) {
+			q = f[j];
+			nr = 0;
+			for (int i = 0; i < length; i++) {
+				x = q + h[i];
+				bVirtual = x - q;
+				aVirtual = x - bVirtual;
+				g[nr] = (q - aVirtual) + (h[i] - bVirtual);
+				if (g[nr] != 0.0) {
+					nr++;
+				}
+				q = x;
+			}
+			g[nr++] = q;
+			System.arraycopy(g, 0, h, 0, nr);
+			length = nr;
+		}
+		return compress(h, length);
+	}
+
+	/**
+	 * Calculate product of expansions e and f exactly
+	 * 
+	 * @return expansion of e * f
+	 */
+	private static double[] product(double[] e, double[] f) {
+		double[] result = { 0.0 };
+		for (int i = 0; i < f.length; i++) {
+			result = sum(result, scale(e, f[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate product of expansion e and b exactly
+	 * 
+	 * @return expansion of e * b
+	 */
+	private static double[] scale(double[] e, double b) {
+		double[] h = new double[2 * e.length];
+		double[] product = new double[2];
+		int nr = 0;
+		double q, sum, bVirtual, aVirtual, round;
+
+		twoProduct(e[0], b, product);
+		q = product[0];
+		if (product[1] != 0.0) {
+			h[nr++] = product[1];
+		}
+		for (int i = 1; i < e.length; i++) {
+			twoProduct(e[i], b, product);
+			// Two sum of q and low part of product
+			sum = q + product[1];
+			bVirtual = sum - q;
+			aVirtual = sum - bVirtual;
+			round = (q - aVirtual) + (product[1] - bVirtual);
+			if (round != 0.0) {
+				h[nr++] = round;
+			}
+			// Fast two sum of high part of product and sum
+			q = product[0] + sum;
+			round = sum - (q - product[0]);
+			if (round != 0.0) {
+				h[nr++] = round;
+			}
+		}
+		h[nr++] = q;
+		return compress(h, nr);
+	}
+
+	/**
+	 * Calculate a * b exactly as a high and a low part
+	 * 
+	 * @param result
+	 *            array to store high part (0) and low part (1)
+	 */
+	private static void twoProduct(double a, double b, double[] result) {
+		double x = a * b;
+		double c = SPLITTER * a;
+		double aHigh = c - (c - a);
+		double aLow = a - aHigh;
+		c = SPLITTER * b;
+		double bHigh = c - (c - b);
+		double bLow = b - bHigh;
+		double error = x - aHigh * bHigh - aLow * bHigh - aHigh * bLow;
+		result[0] = x;
+		result[1] = aLow * bLow - error;
+	}
+
+	/**
+	 * Negate expansion e
+	 * 
+	 * @return expansion of -e
+	 */
+	private static double[] negate(double[] e) {
+		for (int i = 0; i < e.length; i++) {
+			e[i] = -e[i];
+		}
+		return e;
+	}
+
+	/**
+	 * Remove zero components from the first length components of e
+	 * 
+	 * @return expansion without zero components
+	 */
+	private static double[] compress(double[] e, int length) {
+		int nr = 0;
+		for (int i = 0; i < length; i++) {
+			if (e[i] != 0.0) {
+				nr++;
+			}
+		}
+		if (nr == 0) {
+			return new double[] { 0.0 };
+		}
+		double[] result = new double[nr];
+		nr = 0;
+		for (int i = 0; i < length; i++) {
+			if (e[i] != 0.0) {
+				result[nr++] = e[i];
+			}
+		}
+		return result;
+	}
+}
@@ -56,11 +56,11 @@ public class QuadEdge {
 		vertices.add(destination);
 		// Add triangles to edge and edge id to triangles (if triangle exists)
 		if (left != null) {
-			left.addEdge(id);
+			left.addEdge(this);
 			triangles.add(left);
 		}
 		if (right != null) {
-			right.addEdge(id);
+			right.addEdge(this);
 			triangles.add(right);
 		}
 
@@ -85,7 +85,7 @@ public class QuadEdge {
 		if (triangles.contains(null)) {
 			triangles.remove(null);
 		}
-		t.addEdge(id);
+		t.addEdge(this);
 		triangles.add(t);
 	}
 
@@ -101,6 +101,22 @@ public class QuadEdge {
 		// removing a triangle
 	}
 
+	/**
+	 * Get triangle on the other side of this edge than t
+	 * 
+	 * @param t
+	 *            triangle connected to this edge
+	 * @return other triangle, null if there is none
+	 */
+	Triangle getOther(Triangle t) {
+		for (int i = 0; i < triangles.size(); i++) {
+			if (triangles.get(i) != t) {
+				return triangles.get(i);
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Get list of triangles connected to this edge
 	 * 
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Task processing a range of indices in parallel. The range is split in
+ * halves until it is small enough to be processed by one thread.
+ * 
+ * @author Joeri
+ * 
+ */
+abstract class RangeTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+	// Number of indices below which a range is not split
+	private static final int SEQUENTIAL = 1024;
+
+	private final int from;
+	private final int to;
+
+	/**
+	 * Create task for indices from up to to
+	 * 
+	 * @param from
+	 *            first index
+	 * @param to
+	 *            index after last index
+	 */
+	RangeTask(int from, int to) {
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Process indices from up to to in this thread
+	 * 
+	 * @param from
+	 *            first index
+	 * @param to
+	 *            index after last index
+	 */
+	protected abstract void process(int from, int to);
+
+	/**
+	 * Create task for a part of the range
+	 * 
+	 * @param from
+	 *            first index
+	 * @param to
+	 *            index after last index
+	 * @return task for the part
+	 */
+	protected abstract RangeTask split(int from, int to);
+
+	protected void compute() {
+		if (to - from <= SEQUENTIAL) {
+			process(from, to);
+			return;
+		}
+		int mid = from + (to - from) / 2;
+		invokeAll(split(from, mid), split(mid, to));
+	}
+}
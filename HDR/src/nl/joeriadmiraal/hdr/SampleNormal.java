@@ -15,12 +15,13 @@
 
 package nl.joeriadmiraal.hdr;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.util.Random;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Generate observations with x and y coordinates, uniformly distributed
+ * Generate observations with x and y coordinates, normally distributed. The
+ * observations are generated in parallel by ObservationGenerator, which can
+ * also write large samples to a file without keeping them in memory.
  * 
  * @author Joeri
  * 
@@ -31,17 +32,32 @@ public class SampleNormal {
 	private int amountOfObs;
 	private double[][] parameters;
 	boolean independent;
+	private long seed;
 
 	/**
-	 * Initialize generator
+	 * Initialize generator with a seed from the clock
 	 * 
 	 * @param n
 	 *            number of observations needed
 	 */
 	public SampleNormal(int n, double[][] parameters, boolean independent) {
+		this(n, parameters, independent, System.nanoTime());
+	}
+
+	/**
+	 * Initialize generator, the same seed gives the same observations
+	 * 
+	 * @param n
+	 *            number of observations needed
+	 * @param seed
+	 *            seed of the random generators
+	 */
+	public SampleNormal(int n, double[][] parameters, boolean independent,
+			long seed) {
 		amountOfObs = n;
 		this.parameters = parameters;
 		this.independent = independent;
+		this.seed = seed;
 		generate();
 	}
 
@@ -49,43 +65,34 @@ public class SampleNormal {
 	 * Generate the random coordinates
 	 */
 	private void generate() {
-		// place to store info
-		observations = new double[amountOfObs][2];
-		// random generator
-		Random generator = new Random();
-		// generate n normal distributed random coordinates
-		for (int i = 0; i < amountOfObs; i++) {
-			// Normal distribution
-			observations[i][0] = parameters[0][0] + parameters[0][1]
-					* generator.nextGaussian();
-			observations[i][1] = parameters[1][0] + parameters[1][1]
-					* generator.nextGaussian();
-			if (!independent) {
-				observations[i][1] += Math.abs(observations[i][0]);
-			}
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			observations = new ObservationGenerator(parameters, independent,
+					seed).generate(amountOfObs, pool);
+		} finally {
+			pool.shutdown();
 		}
 	}
 
+	/**
+	 * Write observations to name.txt, each line has both coordinates followed
+	 * by a tab
+	 * 
+	 * @param name
+	 *            name of the file without extension
+	 */
 	public void writeObservations(String name) {
 		// write output to file
 		try {
-			// Create file
-			FileWriter fstream = new FileWriter(name + ".txt");
-			BufferedWriter out = new BufferedWriter(fstream);
-
-			// 7 agents, 1 queue
-			for (int obs = 0; obs < amountOfObs; obs++) {
-				String line = "";
-				for (int i = 0; i < 2; i++) {
-					line += "" + observations[obs][i] + "\t";
-				}
-				line += "\r\n";
-				out.write(line);
+			// Same observations, generated again while they are written
+			ForkJoinPool pool = new ForkJoinPool();
+			try {
+				new ObservationGenerator(parameters, independent, seed)
+						.writeText(amountOfObs, name + ".txt", pool);
+			} finally {
+				pool.shutdown();
 			}
-
-			// Close the output stream
-			out.close();
-		} catch (Exception e) {// Catch exception if any
+		} catch (IOException e) {// Catch exception if any
 			System.err.println("Error: " + e.getMessage());
 		}
 	}
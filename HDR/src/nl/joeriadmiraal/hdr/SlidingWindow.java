@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+/**
+ * HDR of the last observations of a stream. Observations that leave the
+ * window are removed from the triangulation and new observations are
+ * inserted, after which the HDR is repaired locally. The triangulation and
+ * HDR are built again if an observation lies outside the super triangle of
+ * the mesh, if the window doubled in size while filling, or after a number
+ * of windows of observations, REBUILD by default. This bounds the ids of
+ * removed vertices that are kept; GraphTheory.repair bounds the drift of the
+ * repaired HDR from alpha.
+ * 
+ * @author Joeri
+ * 
+ */
+public class SlidingWindow {
+
+	// Default number of windows of observations after which everything is
+	// rebuilt
+	public static final int REBUILD = 4;
+
+	private final int size;
+	private final int rebuild;
+	private final double alpha;
+	private final Method method;
+	// Ring buffer of the observations in the window, oldest at first
+	private final double[] xs, ys;
+	private int first = 0;
+	private int count = 0;
+	// Number of observations at the last rebuild and inserted since then
+	private int built = 0;
+	private long inserted = 0;
+	private MeshHdrEngine engine;
+	private HdrResult result;
+	private int nrRebuilds = 0;
+
+	/**
+	 * Create empty window that is rebuilt after REBUILD windows of
+	 * observations
+	 * 
+	 * @param size
+	 *            maximum number of observations in the window
+	 * @param alpha
+	 *            fraction of observations outside the HDR
+	 * @param method
+	 *            method to compute the HDR with
+	 */
+	public SlidingWindow(int size, double alpha, Method method) {
+		this(size, alpha, method, REBUILD);
+	}
+
+	/**
+	 * Create empty window
+	 * 
+	 * @param size
+	 *            maximum number of observations in the window
+	 * @param alpha
+	 *            fraction of observations outside the HDR
+	 * @param method
+	 *            method to compute the HDR with
+	 * @param rebuild
+	 *            number of windows of observations after which everything is
+	 *            rebuilt
+	 */
+	public SlidingWindow(int size, double alpha, Method method, int rebuild) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Window size must be positive");
+		}
+		if (rebuild < 1) {
+			throw new IllegalArgumentException(
+					"Rebuild interval must be positive");
+		}
+		this.size = size;
+		this.rebuild = rebuild;
+		this.alpha = alpha;
+		this.method = method;
+		xs = new double[size];
+		ys = new double[size];
+	}
+
+	/**
+	 * Add observations to the window, the oldest observations leave the
+	 * window if it is full
+	 * 
+	 * @param observations
+	 *            new observations, oldest first
+	 * @return HDR of the observations in the window
+	 */
+	public HdrResult add(Observations observations) {
+		int n = observations.size();
+		if (n == 0) {
+			return result;
+		}
+		inserted += n;
+		if (engine == null || n >= size
+				|| (built < size && count + n >= 2 * built)
+				|| inserted >= (long) rebuild * size || !inside(observations)) {
+			push(observations);
+			rebuild();
+			return result;
+		}
+		// Observations that leave the window
+		int nrExpired = Math.max(0, count + n - size);
+		ArrayObservations expired = new ArrayObservations(nrExpired);
+		for (int i = 0; i < nrExpired; i++) {
+			expired.add(xs[(first + i) % size], ys[(first + i) % size]);
+		}
+		push(observations);
+		result = engine.update(observations, expired);
+		return result;
+	}
+
+	/**
+	 * Add observations at the end of the ring buffer, overwriting the oldest
+	 * 
+	 * @param observations
+	 *            new observations
+	 */
+	private void push(Observations observations) {
+		int n = observations.size();
+		// Only the last size observations fit
+		for (int i = Math.max(0, n - size); i < n; i++) {
+			if (count < size) {
+				xs[(first + count) % size] = observations.x(i);
+				ys[(first + count) % size] = observations.y(i);
+				count++;
+			} else {
+				xs[first] = observations.x(i);
+				ys[first] = observations.y(i);
+				first = (first + 1) % size;
+			}
+		}
+	}
+
+	/**
+	 * Check if all observations lie inside the super triangle of the mesh
+	 * 
+	 * @param observations
+	 *            new observations
+	 * @return true if all observations can be inserted
+	 */
+	private boolean inside(Observations observations) {
+		TriangleMesh mesh = engine.getTriangulation().getMesh();
+		for (int i = 0; i < observations.size(); i++) {
+			if (!mesh.isInside(observations.x(i), observations.y(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Triangulate the observations in the window and compute the HDR again
+	 */
+	private void rebuild() {
+		if (count < 3) {
+			// Not enough observations for a triangulation
+			engine = null;
+			result = null;
+			return;
+		}
+		engine = new MeshHdrEngine(getObservations());
+		result = engine.compute(alpha, method);
+		built = count;
+		inserted = 0;
+		nrRebuilds++;
+	}
+
+	/**
+	 * Get the observations in the window, oldest first
+	 * 
+	 * @return observations in the window
+	 */
+	public Observations getObservations() {
+		ArrayObservations observations = new ArrayObservations(count);
+		for (int i = 0; i < count; i++) {
+			observations.add(xs[(first + i) % size], ys[(first + i) % size]);
+		}
+		return observations;
+	}
+
+	/**
+	 * Get HDR of the observations in the window
+	 * 
+	 * @return last HDR, null if the window has less than 3 observations
+	 */
+	public HdrResult getResult() {
+		return result;
+	}
+
+	/**
+	 * Get engine of the window, with the triangulation of its observations
+	 * 
+	 * @return engine, null if the window has less than 3 observations
+	 */
+	public MeshHdrEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Get number of observations in the window
+	 * 
+	 * @return number of observations in the window
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Get number of windows of observations after which everything is rebuilt
+	 * 
+	 * @return rebuild interval in windows
+	 */
+	public int getRebuild() {
+		return rebuild;
+	}
+
+	/**
+	 * Get number of times the triangulation was built completely
+	 * 
+	 * @return number of rebuilds
+	 */
+	public int getNrRebuilds() {
+		return nrRebuilds;
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of a MeshHdrEngine, so it can be started again without
+ * triangulating and calculating Voronoi cells. The file contains,
+ * little-endian:
+ * <ul>
+ * <li>the magic number and the version</li>
+ * <li>the number of observations, the method (ordinal, -1 if no HDR was
+ * computed) and alpha of the last computation</li>
+ * <li>the area and the levels of the HDR, see GraphTheory.repair</li>
+ * <li>the mesh: coordinates and a triangle of every vertex, corners and
+ * neighbours of every triangle, without free slots</li>
+ * <li>for every vertex of the mesh after the super triangle: id (-1 if
+ * removed), number of duplicates, Voronoi area and whether it is bound and
+ * in the HDR</li>
+ * <li>the neighbour rings of all id's, one after another</li>
+ * </ul>
+ * Every column is read at once from a mapped file.
+ * 
+ * @author Joeri
+ * 
+ */
+class Snapshot {
+
+	/**
+	 * First bytes of a snapshot, "HDRS"
+	 */
+	static final int MAGIC = 0x53524448;
+	/**
+	 * Version of the file format
+	 */
+	static final int VERSION = 1;
+	// Flags of a vertex
+	private static final byte BOUND = 1;
+	private static final byte IN_HDR = 2;
+	// Size of buffer used for writing
+	private static final int BUFFER = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Create writer of a snapshot
+	 * 
+	 * @param channel
+	 *            channel of the file
+	 */
+	private Snapshot(FileChannel channel) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Write snapshot of an engine
+	 * 
+	 * @param triangulation
+	 *            triangulation with Voronoi data
+	 * @param graph
+	 *            graph with the HDR of the last computation, null if there is
+	 *            none
+	 * @param nrObservations
+	 *            number of observations, including duplicates
+	 * @param alpha
+	 *            alpha of the last computation
+	 * @param method
+	 *            method of the last computation, null if there is none
+	 * @param fileName
+	 *            name of the file
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	static void write(MeshTriangulation triangulation, GraphTheory graph,
+			int nrObservations, double alpha, Method method, String fileName)
+			throws IOException {
+		TriangleMesh mesh = triangulation.getMesh();
+		NeighbourRings rings = triangulation.getNeighbourRings();
+		FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			Snapshot out = new Snapshot(channel);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(nrObservations);
+			out.putInt(graph == null ? -1 : method.ordinal());
+			out.putDouble(alpha);
+			out.putDouble(graph == null ? 0.0 : graph.area);
+			out.putDouble(graph == null ? Double.NaN : graph.upper);
+			out.putDouble(graph == null ? Double.NaN : graph.lower);
+			out.putInt(graph == null ? 0 : graph.levelObservations);
+			out.putInt(graph != null && graph.connected ? 1 : 0);
+
+			// Number triangles without free slots
+			int nrVertices = mesh.getNrVertices();
+			int[] number = new int[mesh.getNrSlots()];
+			int nrTriangles = 0;
+			for (int t = 0; t < mesh.getNrSlots(); t++) {
+				number[t] = mesh.isTriangle(t) ? nrTriangles++ : -1;
+			}
+			out.putInt(nrVertices);
+			out.putInt(nrTriangles);
+			out.putInt(rings.getNrIDs());
+			int nrNeighbours = 0;
+			for (int id = 0; id < rings.getNrIDs(); id++) {
+				nrNeighbours += rings.getEnd(id) - rings.getStart(id);
+			}
+			out.putInt(nrNeighbours);
+
+			for (int v = 0; v < nrVertices; v++) {
+				out.putDouble(mesh.x(v));
+			}
+			for (int v = 0; v < nrVertices; v++) {
+				out.putDouble(mesh.y(v));
+			}
+			for (int v = 0; v < nrVertices; v++) {
+				out.putInt(mesh.getTriangle(v) < 0 ? -1 : number[mesh
+						.getTriangle(v)]);
+			}
+			for (int t = 0; t < mesh.getNrSlots(); t++) {
+				if (number[t] >= 0) {
+					for (int i = 0; i < 3; i++) {
+						out.putInt(mesh.getCorner(t, i));
+					}
+				}
+			}
+			int n;
+			for (int t = 0; t < mesh.getNrSlots(); t++) {
+				if (number[t] >= 0) {
+					for (int i = 0; i < 3; i++) {
+						n = mesh.getNeighbour(t, i);
+						out.putInt(n < 0 ? -1 : number[n]);
+					}
+				}
+			}
+
+			Vertex v;
+			for (int p = TriangleMesh.SUPER; p < nrVertices; p++) {
+				v = triangulation.vertex(p);
+				out.putInt(v == null ? -1 : v.getID());
+			}
+			for (int p = TriangleMesh.SUPER; p < nrVertices; p++) {
+				v = triangulation.vertex(p);
+				out.putInt(v == null ? 0 : v.getNrDuplicates());
+			}
+			for (int p = TriangleMesh.SUPER; p < nrVertices; p++) {
+				v = triangulation.vertex(p);
+				out.putDouble(v == null ? 0.0 : v.getArea());
+			}
+			for (int p = TriangleMesh.SUPER; p < nrVertices; p++) {
+				v = triangulation.vertex(p);
+				out.putByte(v == null ? 0 : (byte) ((v.isBound() ? BOUND : 0)
+						| (graph != null && v.isInHDR() ? IN_HDR : 0)));
+			}
+
+			int end = 0;
+			for (int id = 0; id < rings.getNrIDs(); id++) {
+				end += rings.getEnd(id) - rings.getStart(id);
+				out.putInt(end);
+			}
+			for (int id = 0; id < rings.getNrIDs(); id++) {
+				for (int i = rings.getStart(id); i < rings.getEnd(id); i++) {
+					out.putInt(rings.get(i));
+				}
+			}
+			out.flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read snapshot of an engine
+	 * 
+	 * @param fileName
+	 *            name of the file
+	 * @return engine with the triangulation, Voronoi data and HDR of the
+	 *         snapshot
+	 * @throws IOException
+	 *             if the file can not be read or is not a snapshot
+	 */
+	static MeshHdrEngine read(String fileName) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.READ);
+		ByteBuffer in;
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large: " + fileName);
+			}
+			in = channel.map(MapMode.READ_ONLY, 0, channel.size()).order(
+					ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			// Mapped buffers remain valid after closing
+			channel.close();
+		}
+		try {
+			if (in.getInt() != MAGIC) {
+				throw new IOException("Not a snapshot: " + fileName);
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version " + version + ": "
+						+ fileName);
+			}
+			int nrObservations = in.getInt();
+			int ordinal = in.getInt();
+			double alpha = in.getDouble();
+			double area = in.getDouble();
+			double upper = in.getDouble();
+			double lower = in.getDouble();
+			int levelObservations = in.getInt();
+			boolean connected = in.getInt() != 0;
+			int nrVertices = in.getInt();
+			int nrTriangles = in.getInt();
+			int nrIDs = in.getInt();
+			int nrNeighbours = in.getInt();
+			if (nrVertices < TriangleMesh.SUPER || nrTriangles < 1
+					|| nrIDs < 0 || nrNeighbours < 0) {
+				throw new IOException("Invalid snapshot: " + fileName);
+			}
+
+			TriangleMesh mesh = new TriangleMesh(
+					getDoubles(in, nrVertices), getDoubles(in, nrVertices),
+					getInts(in, nrVertices), getInts(in, 3 * nrTriangles),
+					getInts(in, 3 * nrTriangles));
+
+			int nr = nrVertices - TriangleMesh.SUPER;
+			int[] ids = getInts(in, nr);
+			int[] duplicates = getInts(in, nr);
+			double[] areas = getDoubles(in, nr);
+			byte[] flags = new byte[nr];
+			in.get(flags);
+			Vertex[] meshVertices = new Vertex[nr];
+			Vertex v;
+			for (int i = 0; i < nr; i++) {
+				if (ids[i] >= 0) {
+					v = new Vertex(mesh.x(i + TriangleMesh.SUPER),
+							mesh.y(i + TriangleMesh.SUPER));
+					v.setID(ids[i]);
+					for (int k = 0; k < duplicates[i]; k++) {
+						v.addDuplicate();
+					}
+					v.setArea(areas[i]);
+					v.setBound((flags[i] & BOUND) != 0);
+					v.setInHDR((flags[i] & IN_HDR) != 0);
+					meshVertices[i] = v;
+				}
+			}
+			NeighbourRings rings = new NeighbourRings(getInts(in, nrIDs),
+					getInts(in, nrNeighbours));
+
+			MeshTriangulation triangulation = new MeshTriangulation(mesh,
+					meshVertices, rings);
+			Method method = null;
+			GraphTheory graph = null;
+			if (ordinal >= 0) {
+				method = Method.values()[ordinal];
+				graph = new GraphTheory(triangulation.getVertices(), rings);
+				graph.restore(area, upper, lower, levelObservations,
+						connected, method == Method.TOP_DOWN);
+			}
+			return new MeshHdrEngine(triangulation, graph, nrObservations,
+					alpha, method);
+		} catch (RuntimeException e) {
+			// Buffer underflow or invalid numbers
+			throw new IOException("Invalid snapshot: " + fileName, e);
+		}
+	}
+
+	/**
+	 * Read a column of ints
+	 * 
+	 * @param in
+	 *            buffer to read from
+	 * @param nr
+	 *            number of ints
+	 * @return column
+	 */
+	private static int[] getInts(ByteBuffer in, int nr) {
+		int[] column = new int[nr];
+		in.asIntBuffer().get(column);
+		in.position(in.position() + 4 * nr);
+		return column;
+	}
+
+	/**
+	 * Read a column of doubles
+	 * 
+	 * @param in
+	 *            buffer to read from
+	 * @param nr
+	 *            number of doubles
+	 * @return column
+	 */
+	private static double[] getDoubles(ByteBuffer in, int nr) {
+		double[] column = new double[nr];
+		in.asDoubleBuffer().get(column);
+		in.position(in.position() + 8 * nr);
+		return column;
+	}
+
+	/**
+	 * Write an int, flushing the buffer if it is full
+	 * 
+	 * @param i
+	 *            value to write
+	 */
+	private void putInt(int i) throws IOException {
+		if (buffer.remaining() < 4) {
+			flush();
+		}
+		buffer.putInt(i);
+	}
+
+	/**
+	 * Write a double, flushing the buffer if it is full
+	 * 
+	 * @param d
+	 *            value to write
+	 */
+	private void putDouble(double d) throws IOException {
+		if (buffer.remaining() < 8) {
+			flush();
+		}
+		buffer.putDouble(d);
+	}
+
+	/**
+	 * Write a byte, flushing the buffer if it is full
+	 * 
+	 * @param b
+	 *            value to write
+	 */
+	private void putByte(byte b) throws IOException {
+		if (!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.put(b);
+	}
+
+	/**
+	 * Write contents of buffer to the file and clear buffer
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
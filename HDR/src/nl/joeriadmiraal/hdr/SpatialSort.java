@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sorts vertices in an insertion order for the Delaunay triangulation.
+ * Vertices that are close in the order are close in the plane, so point
+ * location walks stay short and cavities stay small.
+ * 
+ * @author Joeri
+ * 
+ */
+public class SpatialSort {
+
+	// Number of bits per coordinate of the grid the curves are laid over
+	private static final int BITS = 16;
+	private static final int SIDE = 1 << BITS;
+	// Seed of the random division in rounds, fixed to keep builds repeatable
+	private static final long BRIO_SEED = 20130101L;
+
+	/**
+	 * Sort vertices in the given insertion order
+	 * 
+	 * @param vertices
+	 *            vertices to be sorted
+	 * @param order
+	 *            insertion order
+	 * @param bounds
+	 *            bounding box of the vertices
+	 */
+	public static void sort(List<Vertex> vertices, InsertionOrder order,
+			Bounds bounds) {
+		switch (order) {
+		case X_SORT:
+			sortX(vertices);
+			break;
+		case HILBERT:
+		case MORTON:
+			sortCurve(vertices, 0, vertices.size(), order, bounds);
+			break;
+		case BRIO:
+			sortBrio(vertices, bounds, new Random(BRIO_SEED));
+			break;
+		}
+	}
+
+	/**
+	 * Sort vertices on x-coordinate
+	 * 
+	 * @param vertices
+	 *            vertices to be sorted
+	 */
+	private static void sortX(List<Vertex> vertices) {
+		Collections.sort(vertices, new Comparator<Vertex>() {
+			public int compare(Vertex a, Vertex b) {
+				return Double.compare(a.x(), b.x());
+			}
+		});
+	}
+
+	/**
+	 * Sort part of the vertices along a space filling curve
+	 * 
+	 * @param vertices
+	 *            vertices to be sorted
+	 * @param from
+	 *            first index to be sorted
+	 * @param to
+	 *            index after last index to be sorted
+	 * @param order
+	 *            HILBERT or MORTON
+	 * @param bounds
+	 *            bounding box of the vertices
+	 */
+	private static void sortCurve(List<Vertex> vertices, int from, int to,
+			InsertionOrder order, Bounds bounds) {
+		int n = to - from;
+		// Combine key and index in one long, so a primitive sort suffices
+		// (key has 2 * BITS bits, index at most 31)
+		long[] keys = new long[n];
+		Vertex v;
+		long key;
+		for (int i = 0; i < n; i++) {
+			v = vertices.get(from + i);
+			if (order == InsertionOrder.MORTON) {
+				key = morton(grid(v.x(), bounds.getMinX(), bounds.getWidth()),
+						grid(v.y(), bounds.getMinY(), bounds.getHeight()));
+			} else {
+				key = hilbert(
+						grid(v.x(), bounds.getMinX(), bounds.getWidth()),
+						grid(v.y(), bounds.getMinY(), bounds.getHeight()));
+			}
+			keys[i] = (key << 31) | i;
+		}
+		Arrays.sort(keys);
+
+		// Put vertices in sorted order
+		Vertex[] sorted = new Vertex[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = vertices.get(from + (int) (keys[i] & 0x7FFFFFFFL));
+		}
+		for (int i = 0; i < n; i++) {
+			vertices.set(from + i, sorted[i]);
+		}
+	}
+
+	/**
+	 * Sort vertices in a biased randomized insertion order. Every vertex is
+	 * placed in the last round with probability 1/2, in the round before with
+	 * probability 1/4 and so on. Each round is then sorted along a Hilbert
+	 * curve.
+	 * 
+	 * @param vertices
+	 *            vertices to be sorted
+	 * @param bounds
+	 *            bounding box of the vertices
+	 * @param random
+	 *            random generator
+	 */
+	private static void sortBrio(List<Vertex> vertices, Bounds bounds,
+			Random random) {
+		int n = vertices.size();
+		// Number of rounds, first round contains a handful of vertices
+		int rounds = 1;
+		while ((n >> rounds) > 16) {
+			rounds++;
+		}
+
+		// Draw round of each vertex and count size of rounds
+		int[] round = new int[n];
+		int[] start = new int[rounds + 1];
+		int r;
+		for (int i = 0; i < n; i++) {
+			r = rounds - 1;
+			while (r > 0 && random.nextBoolean()) {
+				r--;
+			}
+			round[i] = r;
+			start[r + 1]++;
+		}
+		for (r = 0; r < rounds; r++) {
+			start[r + 1] += start[r];
+		}
+
+		// Put vertices in their round
+		Vertex[] grouped = new Vertex[n];
+		int[] next = Arrays.copyOf(start, rounds);
+		for (int i = 0; i < n; i++) {
+			grouped[next[round[i]]++] = vertices.get(i);
+		}
+		for (int i = 0; i < n; i++) {
+			vertices.set(i, grouped[i]);
+		}
+
+		// Sort each round
+		for (r = 0; r < rounds; r++) {
+			sortCurve(vertices, start[r], start[r + 1],
+					InsertionOrder.HILBERT, bounds);
+		}
+	}
+
+	/**
+	 * Map coordinate to cell of the grid
+	 * 
+	 * @param c
+	 *            coordinate
+	 * @param min
+	 *            minimum coordinate
+	 * @param size
+	 *            width of range of coordinates
+	 * @return cell number between 0 and SIDE - 1
+	 */
+	static int grid(double c, double min, double size) {
+		if (size <= 0) {
+			return 0;
+		}
+		int cell = (int) ((c - min) / size * SIDE);
+		return Math.max(0, Math.min(SIDE - 1, cell));
+	}
+
+	/**
+	 * Calculate distance along Hilbert curve of a grid cell
+	 * 
+	 * @param x
+	 *            column of grid cell
+	 * @param y
+	 *            row of grid cell
+	 * @return distance along Hilbert curve
+	 */
+	static long hilbert(int x, int y) {
+		long d = 0;
+		int rx, ry, temp;
+		for (int s = SIDE / 2; s > 0; s /= 2) {
+			rx = (x & s) > 0 ? 1 : 0;
+			ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			// Rotate quadrant
+			if (ry == 0) {
+				if (rx == 1) {
+					x = SIDE - 1 - x;
+					y = SIDE - 1 - y;
+				}
+				temp = x;
+				x = y;
+				y = temp;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Calculate distance along Morton curve of a grid cell (interleaved bits)
+	 * 
+	 * @param x
+	 *            column of grid cell
+	 * @param y
+	 *            row of grid cell
+	 * @return distance along Morton curve
+	 */
+	static long morton(int x, int y) {
+		return spread(x) | (spread(y) << 1);
+	}
+
+	/**
+	 * Spread the lower 16 bits of i over the even bits of a long
+	 * 
+	 * @param i
+	 *            bits to be spread
+	 * @return spread bits
+	 */
+	private static long spread(int i) {
+		long x = i & 0xFFFFL;
+		x = (x | (x << 8)) & 0x00FF00FFL;
+		x = (x | (x << 4)) & 0x0F0F0F0FL;
+		x = (x | (x << 2)) & 0x33333333L;
+		x = (x | (x << 1)) & 0x55555555L;
+		return x;
+	}
+}
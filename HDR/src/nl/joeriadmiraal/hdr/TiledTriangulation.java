@@ -0,0 +1,1039 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Delaunay triangulation and Voronoi cells of observations that do not fit in
+ * memory. The plane is divided in tiles with about the same number of
+ * observations: columns on x-coordinate, and each column in rows on
+ * y-coordinate. Observations are spilled to a file grouped by tile. Each tile
+ * is then triangulated together with a ring of neighbouring tiles (the halo).
+ * A cell is only written when all its triangles are certainly in the
+ * triangulation of all observations: the bounding box of the circumcircle is
+ * covered by loaded tiles, or for an edge of the convex hull, the part of the
+ * plane beyond the edge is. Cells that can not be certified are computed
+ * again with a wider halo. Memory is bounded by the size of the halo, not by
+ * the number of observations.
+ * 
+ * The cells are written to a file that is read with CellReader. Cells of
+ * vertices on the convex hull are bound and have infinite area.
+ * 
+ * @author Joeri
+ * 
+ */
+public class TiledTriangulation {
+
+	/**
+	 * First bytes of a file with cells, "HDRC"
+	 */
+	public static final int MAGIC = 0x43524448;
+	/**
+	 * Version of the file format
+	 */
+	public static final int VERSION = 1;
+	static final int HEADER = 16;
+	// Number of bins per coordinate of the histogram the tiles are built on
+	private static final int FINE = 1024;
+	// Bytes of a spilled observation: id, x and y
+	private static final int RECORD = 20;
+	// Bytes buffered per tile while spilling
+	private static final int TILE_BUFFER = 1 << 12;
+	private static final int BUFFER = 1 << 16;
+	// Size of the super triangle relative to the bounding box
+	private static final double SUPER_MARGIN = 1e4;
+
+	private Observations observations;
+	private int pointsPerTile;
+	private Bounds bounds = new Bounds();
+
+	// Columns of tiles, by bin of x-coordinate and first bin of each column
+	private int[] columnOfBin;
+	private int[] columnStart;
+	// Rows of tiles in each column, by bin of y-coordinate and first bin of
+	// each row
+	private int[][] rowOfBin;
+	private int[][] rowStart;
+	// Number of first tile of each column
+	private int[] firstTile;
+	// Position of first observation of each tile in the spill file
+	private long[] tileStart;
+	// Bounding box of the observations of each tile, and vertices of the
+	// convex hull of each tile
+	private double[] tileBounds;
+	private int[] hullStart;
+	private double[] hullXs;
+	private double[] hullYs;
+	// Observations on the convex hull of all observations, and their tiles
+	private int[] globalIDs;
+	private double[] globalXs;
+	private double[] globalYs;
+	private int[] globalTiles;
+	private long[] hullOrder;
+
+	// Tiles in memory, and tiles to be loaded for the current tile
+	private boolean[] loaded;
+	private boolean[] wanted;
+	// Whether no tile was found that blocks a cell
+	private boolean widen;
+	private boolean allLoaded;
+	// Observations in memory: id, coordinates and tile
+	private int nrLoaded;
+	private int[] ids = new int[0];
+	private double[] xs = new double[0];
+	private double[] ys = new double[0];
+	// Mesh of unique observations in memory, and index of mesh vertices
+	private TriangleMesh mesh;
+	private int[] meshVertex = new int[0];
+	private int[] loadedOf = new int[0];
+	private int[] duplicates = new int[0];
+	private int[] neighbours = new int[16];
+	private double[] centre = new double[2];
+
+	private int maxLoaded;
+	private int nrCells;
+	private int nrRetries;
+
+	/**
+	 * Create tiled triangulation of observations
+	 * 
+	 * @param observations
+	 *            observations, for example mapped from a binary file
+	 * @param pointsPerTile
+	 *            average number of observations in a tile
+	 */
+	public TiledTriangulation(Observations observations, int pointsPerTile) {
+		this.observations = observations;
+		this.pointsPerTile = Math.max(1, pointsPerTile);
+	}
+
+	/**
+	 * Triangulate all tiles and write the cells to a file. Observations are
+	 * spilled to a temporary file in the same directory.
+	 * 
+	 * @param cellFile
+	 *            name of the file to write the cells to
+	 * @throws IOException
+	 *             if a file can not be written
+	 */
+	public void triangulate(String cellFile) throws IOException {
+		createTiles();
+		File directory = new File(cellFile).getAbsoluteFile().getParentFile();
+		File spillFile = File.createTempFile("tiles", ".spill", directory);
+		FileChannel spill = FileChannel.open(spillFile.toPath(),
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+		FileChannel cells = FileChannel.open(Paths.get(cellFile),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			spill(spill);
+			summarizeTiles(spill);
+			ByteBuffer out = ByteBuffer.allocate(BUFFER).order(
+					ByteOrder.LITTLE_ENDIAN);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putLong(0);
+			nrCells = 0;
+			for (int column = 0; column < firstTile.length - 1; column++) {
+				for (int row = 0; row < rowStart[column].length - 1; row++) {
+					triangulateTile(column, row, spill, cells, out);
+				}
+			}
+			flush(cells, out);
+			// Write number of cells in header
+			out.putLong(nrCells);
+			out.flip();
+			cells.write(out, 8);
+		} finally {
+			spill.close();
+			cells.close();
+		}
+	}
+
+	/**
+	 * Get number of tiles
+	 * 
+	 * @return number of tiles
+	 */
+	public int getNrTiles() {
+		return firstTile[firstTile.length - 1];
+	}
+
+	/**
+	 * Get the largest number of observations that was in memory at once
+	 * 
+	 * @return number of observations
+	 */
+	public int getMaxLoaded() {
+		return maxLoaded;
+	}
+
+	/**
+	 * Get number of cells written
+	 * 
+	 * @return number of cells
+	 */
+	public int getNrCells() {
+		return nrCells;
+	}
+
+	/**
+	 * Get number of times a tile was triangulated again with a wider halo
+	 * 
+	 * @return number of retries
+	 */
+	public int getNrRetries() {
+		return nrRetries;
+	}
+
+	/**
+	 * Divide the plane in tiles, using a histogram of the observations
+	 */
+	private void createTiles() {
+		int n = observations.size();
+		for (int i = 0; i < n; i++) {
+			bounds.add(observations.x(i), observations.y(i));
+		}
+		int[] histogram = new int[FINE * FINE];
+		int[] columnCounts = new int[FINE];
+		int bx;
+		for (int i = 0; i < n; i++) {
+			bx = binX(observations.x(i));
+			histogram[bx * FINE + binY(observations.y(i))]++;
+			columnCounts[bx]++;
+		}
+
+		// Columns with about the same number of observations
+		int nrColumns = (int) Math.max(1,
+				Math.round(Math.sqrt((double) n / pointsPerTile)));
+		columnOfBin = new int[FINE];
+		int[] starts = new int[nrColumns + 1];
+		int column = 0;
+		long cumulative = 0;
+		for (bx = 0; bx < FINE; bx++) {
+			columnOfBin[bx] = column;
+			cumulative += columnCounts[bx];
+			if (column < nrColumns - 1
+					&& cumulative >= (long) n * (column + 1) / nrColumns) {
+				column++;
+				starts[column] = bx + 1;
+			}
+		}
+		nrColumns = column + 1;
+		columnStart = Arrays.copyOf(starts, nrColumns + 1);
+		columnStart[nrColumns] = FINE;
+
+		// Rows in each column
+		rowOfBin = new int[nrColumns][FINE];
+		rowStart = new int[nrColumns][];
+		firstTile = new int[nrColumns + 1];
+		int[] rowCounts = new int[FINE];
+		int count, nrRows, row;
+		for (column = 0; column < nrColumns; column++) {
+			Arrays.fill(rowCounts, 0);
+			count = 0;
+			for (bx = columnStart[column]; bx < columnStart[column + 1]; bx++) {
+				for (int by = 0; by < FINE; by++) {
+					rowCounts[by] += histogram[bx * FINE + by];
+				}
+				count += columnCounts[bx];
+			}
+			nrRows = Math.max(1, (count + pointsPerTile - 1) / pointsPerTile);
+			starts = new int[nrRows + 1];
+			row = 0;
+			cumulative = 0;
+			for (int by = 0; by < FINE; by++) {
+				rowOfBin[column][by] = row;
+				cumulative += rowCounts[by];
+				if (row < nrRows - 1
+						&& cumulative >= (long) count * (row + 1) / nrRows) {
+					row++;
+					starts[row] = by + 1;
+				}
+			}
+			nrRows = row + 1;
+			rowStart[column] = Arrays.copyOf(starts, nrRows + 1);
+			rowStart[column][nrRows] = FINE;
+			firstTile[column + 1] = firstTile[column] + nrRows;
+		}
+		loaded = new boolean[getNrTiles()];
+		wanted = new boolean[getNrTiles()];
+	}
+
+	/**
+	 * Get bin of the histogram of an x-coordinate
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @return bin between 0 and FINE - 1
+	 */
+	private int binX(double x) {
+		return bin(x, bounds.getMinX(), bounds.getWidth());
+	}
+
+	/**
+	 * Get bin of the histogram of a y-coordinate
+	 * 
+	 * @param y
+	 *            y-coordinate
+	 * @return bin between 0 and FINE - 1
+	 */
+	private int binY(double y) {
+		return bin(y, bounds.getMinY(), bounds.getHeight());
+	}
+
+	/**
+	 * Map coordinate to bin of the histogram
+	 * 
+	 * @param c
+	 *            coordinate
+	 * @param min
+	 *            minimum coordinate
+	 * @param size
+	 *            width of range of coordinates
+	 * @return bin between 0 and FINE - 1
+	 */
+	private static int bin(double c, double min, double size) {
+		if (size <= 0) {
+			return 0;
+		}
+		int bin = (int) ((c - min) / size * FINE);
+		return Math.max(0, Math.min(FINE - 1, bin));
+	}
+
+	/**
+	 * Get tile of a point
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 * @return number of the tile
+	 */
+	private int tileOf(double x, double y) {
+		int column = columnOfBin[binX(x)];
+		return firstTile[column] + rowOfBin[column][binY(y)];
+	}
+
+	/**
+	 * Write observations to the spill file, grouped by tile
+	 * 
+	 * @param spill
+	 *            spill file
+	 */
+	private void spill(FileChannel spill) throws IOException {
+		int nrTiles = getNrTiles();
+		int n = observations.size();
+		tileStart = new long[nrTiles + 1];
+		for (int i = 0; i < n; i++) {
+			tileStart[tileOf(observations.x(i), observations.y(i)) + 1]++;
+		}
+		for (int t = 0; t < nrTiles; t++) {
+			tileStart[t + 1] += tileStart[t];
+		}
+		// Observations are written in order, so the first of duplicate
+		// observations in a tile has the lowest id
+		long[] next = Arrays.copyOf(tileStart, nrTiles);
+		ByteBuffer[] buffers = new ByteBuffer[nrTiles];
+		ByteBuffer buffer;
+		int tile;
+		for (int i = 0; i < n; i++) {
+			tile = tileOf(observations.x(i), observations.y(i));
+			buffer = buffers[tile];
+			if (buffer == null) {
+				buffer = ByteBuffer.allocate(TILE_BUFFER - TILE_BUFFER % RECORD)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				buffers[tile] = buffer;
+			}
+			if (!buffer.hasRemaining()) {
+				next[tile] += write(spill, buffer, next[tile]);
+			}
+			buffer.putInt(i);
+			buffer.putDouble(observations.x(i));
+			buffer.putDouble(observations.y(i));
+		}
+		for (tile = 0; tile < nrTiles; tile++) {
+			if (buffers[tile] != null) {
+				write(spill, buffers[tile], next[tile]);
+			}
+		}
+	}
+
+	/**
+	 * Write buffered observations of a tile to the spill file
+	 * 
+	 * @param spill
+	 *            spill file
+	 * @param buffer
+	 *            buffered observations
+	 * @param record
+	 *            number of the first buffered observation in the file
+	 * @return number of observations written
+	 */
+	private static int write(FileChannel spill, ByteBuffer buffer, long record)
+			throws IOException {
+		buffer.flip();
+		int records = buffer.remaining() / RECORD;
+		long position = record * RECORD;
+		while (buffer.hasRemaining()) {
+			position += spill.write(buffer, position);
+		}
+		buffer.clear();
+		return records;
+	}
+
+	/**
+	 * Compute bounding box and convex hull of the observations of each tile,
+	 * to check whether tiles that are not loaded can affect a cell. The
+	 * convex hull of all observations is computed from the hulls of the
+	 * tiles.
+	 * 
+	 * @param spill
+	 *            spill file
+	 */
+	private void summarizeTiles(FileChannel spill) throws IOException {
+		int nrTiles = getNrTiles();
+		tileBounds = new double[4 * nrTiles];
+		hullStart = new int[nrTiles + 1];
+		int[] tileHullIDs = new int[64];
+		hullXs = new double[64];
+		hullYs = new double[64];
+		int[] hull = new int[0];
+		int nrHull;
+		for (int tile = 0; tile < nrTiles; tile++) {
+			nrLoaded = 0;
+			readTile(tile, spill);
+			loaded[tile] = false;
+			Bounds box = new Bounds();
+			for (int i = 0; i < nrLoaded; i++) {
+				box.add(xs[i], ys[i]);
+			}
+			tileBounds[4 * tile] = box.getMinX();
+			tileBounds[4 * tile + 1] = box.getMinY();
+			tileBounds[4 * tile + 2] = box.getMaxX();
+			tileBounds[4 * tile + 3] = box.getMaxY();
+
+			if (hull.length < 2 * nrLoaded + 1) {
+				hull = new int[2 * xs.length + 1];
+			}
+			nrHull = convexHull(hull);
+			int start = hullStart[tile];
+			if (start + nrHull > hullXs.length) {
+				tileHullIDs = Arrays.copyOf(tileHullIDs, 2 * (start + nrHull));
+				hullXs = Arrays.copyOf(hullXs, 2 * (start + nrHull));
+				hullYs = Arrays.copyOf(hullYs, 2 * (start + nrHull));
+			}
+			for (int h = 0; h < nrHull; h++) {
+				tileHullIDs[start + h] = ids[hull[h]];
+				hullXs[start + h] = xs[hull[h]];
+				hullYs[start + h] = ys[hull[h]];
+			}
+			hullStart[tile + 1] = start + nrHull;
+		}
+
+		// Convex hull of all observations
+		nrLoaded = hullStart[nrTiles];
+		ensureLoaded(nrLoaded);
+		System.arraycopy(tileHullIDs, 0, ids, 0, nrLoaded);
+		System.arraycopy(hullXs, 0, xs, 0, nrLoaded);
+		System.arraycopy(hullYs, 0, ys, 0, nrLoaded);
+		hull = new int[2 * nrLoaded + 1];
+		nrHull = convexHull(hull);
+		// Observations of the hull are loaded with every tile
+		globalIDs = new int[nrHull];
+		globalXs = new double[nrHull];
+		globalYs = new double[nrHull];
+		globalTiles = new int[nrHull];
+		for (int h = 0; h < nrHull; h++) {
+			globalIDs[h] = ids[hull[h]];
+			globalXs[h] = xs[hull[h]];
+			globalYs[h] = ys[hull[h]];
+			globalTiles[h] = tileOf(xs[hull[h]], ys[hull[h]]);
+		}
+		// Position on the hull by id, id and position in one long
+		hullOrder = new long[nrHull];
+		for (int h = 0; h < nrHull; h++) {
+			hullOrder[h] = ((long) globalIDs[h] << 32) | h;
+		}
+		Arrays.sort(hullOrder);
+	}
+
+	/**
+	 * Compute convex hull of the observations in memory with the monotone
+	 * chain algorithm. Of duplicate observations the first is used.
+	 * 
+	 * @param hull
+	 *            array to store the hull in, of length at least 2 * nrLoaded
+	 *            + 1
+	 * @return number of observations on the hull, counterclockwise in hull
+	 */
+	private int convexHull(int[] hull) {
+		Integer[] order = new Integer[nrLoaded];
+		for (int i = 0; i < nrLoaded; i++) {
+			order[i] = i;
+		}
+		// Stable sort, so the first of duplicate observations comes first
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int c = Double.compare(xs[a], xs[b]);
+				return c != 0 ? c : Double.compare(ys[a], ys[b]);
+			}
+		});
+		int size = 0;
+		for (int i = 0; i < nrLoaded; i++) {
+			size = addToChain(hull, size, 2, order[i]);
+		}
+		int lower = size + 1;
+		for (int i = nrLoaded - 2; i >= 0; i--) {
+			size = addToChain(hull, size, lower, order[i]);
+		}
+		// Last observation of the chain is the first
+		return size < 2 ? size : size - 1;
+	}
+
+	/**
+	 * Add observation to a chain of the convex hull, removing observations
+	 * that do not make a left turn
+	 * 
+	 * @param hull
+	 *            observations of the chain
+	 * @param size
+	 *            number of observations in the chain
+	 * @param minimum
+	 *            number of observations that can not be removed, plus one
+	 * @param i
+	 *            observation to add
+	 * @return new number of observations in the chain
+	 */
+	private int addToChain(int[] hull, int size, int minimum, int i) {
+		if (size > 0 && xs[hull[size - 1]] == xs[i]
+				&& ys[hull[size - 1]] == ys[i]) {
+			return size;
+		}
+		while (size >= minimum
+				&& Predicates.orient2d(xs[hull[size - 2]], ys[hull[size - 2]],
+						xs[hull[size - 1]], ys[hull[size - 1]], xs[i], ys[i]) <= 0) {
+			size--;
+		}
+		hull[size] = i;
+		return size + 1;
+	}
+
+	/**
+	 * Triangulate a tile and write its cells. The halo starts with the tiles
+	 * around it. Tiles that may affect a cell that can not be certified are
+	 * added to the halo until all cells are certified.
+	 * 
+	 * @param column
+	 *            column of the tile
+	 * @param row
+	 *            row of the tile in the column
+	 * @param spill
+	 *            spill file
+	 * @param cells
+	 *            cell file
+	 * @param out
+	 *            buffer of the cell file
+	 */
+	private void triangulateTile(int column, int row, FileChannel spill,
+			FileChannel cells, ByteBuffer out) throws IOException {
+		int tile = firstTile[column] + row;
+		int nrOwned = (int) (tileStart[tile + 1] - tileStart[tile]);
+		if (nrOwned == 0) {
+			return;
+		}
+		Arrays.fill(wanted, false);
+		int ring = 1;
+		addRing(column, row, ring);
+		// Observations of the tile are loaded first, so they are the first
+		// observations in memory in every attempt
+		boolean[] pending = null;
+		int nrPending = nrOwned;
+		while (nrPending > 0) {
+			load(tile, spill);
+			if (pending == null) {
+				pending = new boolean[nrOwned];
+				for (int i = 0; i < nrOwned; i++) {
+					// Only the first of duplicate observations has a cell
+					pending[i] = meshVertex[i] >= 0;
+				}
+			}
+			nrPending = 0;
+			widen = true;
+			for (int i = 0; i < nrOwned; i++) {
+				if (pending[i]) {
+					if (writeCell(i, cells, out)) {
+						pending[i] = false;
+					} else {
+						nrPending++;
+					}
+				}
+			}
+			if (nrPending > 0) {
+				nrRetries++;
+				if (widen) {
+					// No tile found that blocks a cell
+					ring++;
+					addRing(column, row, ring);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add a ring of tiles around a tile to the tiles to be loaded
+	 * 
+	 * @param column
+	 *            column of the tile
+	 * @param row
+	 *            row of the tile in the column
+	 * @param ring
+	 *            number of rows and columns around the tile
+	 */
+	private void addRing(int column, int row, int ring) {
+		// Rows of the tile's column give the range of y-coordinates
+		int[] starts = rowStart[column];
+		int by0 = starts[Math.max(0, row - ring)];
+		int by1 = starts[Math.min(starts.length - 1, row + ring + 1)] - 1;
+		int nrColumns = firstTile.length - 1;
+		int c0 = Math.max(0, column - ring);
+		int c1 = Math.min(nrColumns - 1, column + ring);
+		for (int c = c0; c <= c1; c++) {
+			for (int r = rowOfBin[c][by0]; r <= rowOfBin[c][by1]; r++) {
+				wanted[firstTile[c] + r] = true;
+			}
+		}
+		if (c0 == 0 && c1 == nrColumns - 1 && by0 == 0 && by1 == FINE - 1) {
+			// Rows of other columns may lie outside the y-range of the rows
+			// of this column
+			Arrays.fill(wanted, true);
+		}
+	}
+
+	/**
+	 * Load the tiles to be loaded and triangulate the unique observations
+	 * 
+	 * @param tile
+	 *            tile of which the cells are computed, loaded first
+	 * @param spill
+	 *            spill file
+	 */
+	private void load(int tile, FileChannel spill) throws IOException {
+		Arrays.fill(loaded, false);
+		nrLoaded = 0;
+		readTile(tile, spill);
+		allLoaded = true;
+		for (int t = 0; t < wanted.length; t++) {
+			if (wanted[t] && t != tile) {
+				readTile(t, spill);
+			}
+			allLoaded &= wanted[t];
+		}
+		// Add the convex hull, so the hull edges of all observations are
+		// in the mesh
+		ensureLoaded(nrLoaded + globalIDs.length);
+		for (int h = 0; h < globalIDs.length; h++) {
+			if (!loaded[globalTiles[h]]) {
+				ids[nrLoaded] = globalIDs[h];
+				xs[nrLoaded] = globalXs[h];
+				ys[nrLoaded] = globalYs[h];
+				nrLoaded++;
+			}
+		}
+		maxLoaded = Math.max(maxLoaded, nrLoaded);
+		triangulateLoaded();
+	}
+
+	/**
+	 * Read observations of a tile from the spill file
+	 * 
+	 * @param tile
+	 *            number of the tile
+	 * @param spill
+	 *            spill file
+	 */
+	private void readTile(int tile, FileChannel spill) throws IOException {
+		loaded[tile] = true;
+		int count = (int) (tileStart[tile + 1] - tileStart[tile]);
+		ensureLoaded(nrLoaded + count);
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER - BUFFER % RECORD)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		long position = tileStart[tile] * RECORD;
+		long end = tileStart[tile + 1] * RECORD;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			while (buffer.hasRemaining()) {
+				position += spill.read(buffer, position);
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				ids[nrLoaded] = buffer.getInt();
+				xs[nrLoaded] = buffer.getDouble();
+				ys[nrLoaded] = buffer.getDouble();
+				nrLoaded++;
+			}
+		}
+	}
+
+	/**
+	 * Make room for a number of observations in memory
+	 * 
+	 * @param size
+	 *            number of observations
+	 */
+	private void ensureLoaded(int size) {
+		if (size > ids.length) {
+			int length = Math.max(size, 2 * ids.length);
+			ids = Arrays.copyOf(ids, length);
+			xs = Arrays.copyOf(xs, length);
+			ys = Arrays.copyOf(ys, length);
+		}
+	}
+
+	/**
+	 * Triangulate the unique observations in memory along a Hilbert curve.
+	 * Duplicates are counted on the first observation with the same
+	 * coordinates.
+	 */
+	private void triangulateLoaded() {
+		if (meshVertex.length < nrLoaded) {
+			meshVertex = new int[ids.length];
+			loadedOf = new int[ids.length];
+			duplicates = new int[ids.length];
+		}
+		Bounds region = new Bounds();
+		PointTable table = new PointTable(nrLoaded);
+		int first;
+		int nrUnique = 0;
+		for (int i = 0; i < nrLoaded; i++) {
+			first = table.putIfAbsent(xs[i], ys[i], i);
+			duplicates[i] = 0;
+			if (first >= 0) {
+				meshVertex[i] = -1;
+				duplicates[first]++;
+			} else {
+				meshVertex[i] = 0;
+				region.add(xs[i], ys[i]);
+				nrUnique++;
+			}
+		}
+
+		// Sort unique observations along Hilbert curve, key and index in one
+		// long
+		long[] keys = new long[nrUnique];
+		int k = 0;
+		for (int i = 0; i < nrLoaded; i++) {
+			if (meshVertex[i] == 0) {
+				keys[k++] = (SpatialSort.hilbert(
+						SpatialSort.grid(xs[i], region.getMinX(),
+								region.getWidth()),
+						SpatialSort.grid(ys[i], region.getMinY(),
+								region.getHeight())) << 31)
+						| i;
+			}
+		}
+		Arrays.sort(keys);
+
+		// Super triangle far away, so it does not change the triangles near
+		// the convex hull
+		double margin = SUPER_MARGIN
+				* Math.max(bounds.getWidth(), bounds.getHeight());
+		mesh = new TriangleMesh(nrUnique);
+		mesh.setSuperTriangle(bounds.getMinX() - margin, bounds.getMinY()
+				- margin, bounds.getMaxX() + margin, bounds.getMaxY() + margin);
+		int i, v;
+		for (k = 0; k < nrUnique; k++) {
+			i = (int) (keys[k] & 0x7FFFFFFFL);
+			v = mesh.addVertex(xs[i], ys[i]);
+			meshVertex[i] = v;
+			loadedOf[v - TriangleMesh.SUPER] = i;
+			mesh.insert(v);
+		}
+		mesh.reportCounts();
+	}
+
+	/**
+	 * Write the cell of an observation in memory, if all its triangles are
+	 * certified
+	 * 
+	 * @param i
+	 *            index of the observation in memory
+	 * @param cells
+	 *            cell file
+	 * @param out
+	 *            buffer of the cell file
+	 * @return true if the cell is certified and written
+	 */
+	private boolean writeCell(int i, FileChannel cells, ByteBuffer out)
+			throws IOException {
+		int p = meshVertex[i];
+		int first = mesh.getTriangle(p);
+		int t = first;
+		int corner, a, b;
+		int nr = 0;
+		boolean bound = false;
+		double sum = 0.0;
+		mesh.getCentre(t, centre);
+		double firstX = centre[0];
+		double firstY = centre[1];
+		double previousX = firstX;
+		double previousY = firstY;
+		do {
+			corner = mesh.cornerOf(t, p);
+			a = mesh.getCorner(t, (corner + 1) % 3);
+			b = mesh.getCorner(t, (corner + 2) % 3);
+			if (a >= TriangleMesh.SUPER && b >= TriangleMesh.SUPER) {
+				if (!allLoaded && !isCircleLoaded(t)) {
+					return false;
+				}
+			} else {
+				// Triangle outside the convex hull, its real vertex must be
+				// a neighbour of p on the hull of all observations
+				bound = true;
+				if (!allLoaded
+						&& ((a >= TriangleMesh.SUPER && !isHullEdge(i,
+								loadedOf[a - TriangleMesh.SUPER])) || (b >= TriangleMesh.SUPER && !isHullEdge(
+								i, loadedOf[b - TriangleMesh.SUPER])))) {
+					return false;
+				}
+			}
+			if (b >= TriangleMesh.SUPER) {
+				if (nr == neighbours.length) {
+					neighbours = Arrays.copyOf(neighbours, 2 * nr);
+				}
+				neighbours[nr++] = ids[loadedOf[b - TriangleMesh.SUPER]];
+			}
+			t = mesh.getNeighbour(t, (corner + 1) % 3);
+			mesh.getCentre(t, centre);
+			sum += previousX * centre[1] - centre[0] * previousY;
+			previousX = centre[0];
+			previousY = centre[1];
+		} while (t != first);
+		sum += previousX * firstY - firstX * previousY;
+		double area = bound ? Double.POSITIVE_INFINITY : (sum / 2.0)
+				/ (1 + duplicates[i]);
+
+		// Write cell
+		int size = 4 + 16 + 4 + 1 + 8 + 4 + 4 * nr;
+		if (out.remaining() < size) {
+			flush(cells, out);
+			if (out.capacity() < size) {
+				throw new IOException("Cell with " + nr + " neighbours");
+			}
+		}
+		out.putInt(ids[i]);
+		out.putDouble(xs[i]);
+		out.putDouble(ys[i]);
+		out.putInt(duplicates[i]);
+		out.put((byte) (bound ? 1 : 0));
+		out.putDouble(area);
+		out.putInt(nr);
+		for (int k = 0; k < nr; k++) {
+			out.putInt(neighbours[k]);
+		}
+		nrCells++;
+		return true;
+	}
+
+	/**
+	 * Check whether no observation of a tile that is not loaded can be inside
+	 * the circumcircle of a triangle
+	 * 
+	 * @param t
+	 *            triangle of the mesh, its centre must be in centre
+	 * @return true if the circumcircle is covered by loaded tiles
+	 */
+	private boolean isCircleLoaded(int t) {
+		double cx = centre[0];
+		double cy = centre[1];
+		int a = mesh.getCorner(t, 0);
+		double r = Math.hypot(cx - mesh.x(a), cy - mesh.y(a));
+		// Widen a little for rounding in the centre
+		r += 1e-9 * (r + Math.abs(cx) + Math.abs(cy));
+		if (!(r < Double.POSITIVE_INFINITY)) {
+			return false;
+		}
+		double x0 = Math.max(cx - r, bounds.getMinX());
+		double y0 = Math.max(cy - r, bounds.getMinY());
+		double x1 = Math.min(cx + r, bounds.getMaxX());
+		double y1 = Math.min(cy + r, bounds.getMaxY());
+		if (x0 > x1 || y0 > y1) {
+			return true;
+		}
+		int c0 = columnOfBin[binX(x0)];
+		int c1 = columnOfBin[binX(x1)];
+		int by0 = binY(y0);
+		int by1 = binY(y1);
+		int tile;
+		double dx, dy;
+		boolean covered = true;
+		for (int c = c0; c <= c1; c++) {
+			for (int row = rowOfBin[c][by0]; row <= rowOfBin[c][by1]; row++) {
+				tile = firstTile[c] + row;
+				if (loaded[tile] || hullStart[tile] == hullStart[tile + 1]) {
+					continue;
+				}
+				// Distance from centre to bounding box of the tile
+				dx = Math.max(0.0, Math.max(tileBounds[4 * tile] - cx, cx
+						- tileBounds[4 * tile + 2]));
+				dy = Math.max(0.0, Math.max(tileBounds[4 * tile + 1] - cy, cy
+						- tileBounds[4 * tile + 3]));
+				if (dx * dx + dy * dy <= r * r
+						&& intersectsHull(tile, cx, cy, r)) {
+					wanted[tile] = true;
+					widen = false;
+					covered = false;
+				}
+			}
+		}
+		return covered;
+	}
+
+	/**
+	 * Check whether the edge between two observations in memory is an edge
+	 * of the convex hull of all observations
+	 * 
+	 * @param i
+	 *            index of first observation in memory
+	 * @param j
+	 *            index of second observation in memory
+	 * @return true if the observations are neighbours on the hull
+	 */
+	private boolean isHullEdge(int i, int j) {
+		int h = hullPosition(ids[i]);
+		int n = globalIDs.length;
+		return h >= 0
+				&& (globalIDs[(h + 1) % n] == ids[j] || globalIDs[(h + n - 1)
+						% n] == ids[j]);
+	}
+
+	/**
+	 * Get position of an observation on the convex hull of all observations
+	 * 
+	 * @param id
+	 *            id of the observation
+	 * @return position on the hull, -1 if the observation is not on the hull
+	 */
+	private int hullPosition(int id) {
+		int low = 0;
+		int high = hullOrder.length - 1;
+		int middle, other;
+		while (low <= high) {
+			middle = (low + high) >>> 1;
+			other = (int) (hullOrder[middle] >>> 32);
+			if (other < id) {
+				low = middle + 1;
+			} else if (other > id) {
+				high = middle - 1;
+			} else {
+				return (int) hullOrder[middle];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Check whether a circle intersects the convex hull of the observations
+	 * of a tile
+	 * 
+	 * @param tile
+	 *            number of the tile
+	 * @param cx
+	 *            x-coordinate of the centre
+	 * @param cy
+	 *            y-coordinate of the centre
+	 * @param r
+	 *            radius
+	 * @return true if the circle and the hull intersect
+	 */
+	private boolean intersectsHull(int tile, double cx, double cy, double r) {
+		int start = hullStart[tile];
+		int end = hullStart[tile + 1];
+		boolean inside = end - start > 2;
+		double ax, ay, bx, by, ex, ey, f, dx, dy;
+		for (int h = start; h < end; h++) {
+			ax = hullXs[h];
+			ay = hullYs[h];
+			bx = hullXs[h + 1 < end ? h + 1 : start];
+			by = hullYs[h + 1 < end ? h + 1 : start];
+			// Nearest point to the centre on the edge from a to b
+			ex = bx - ax;
+			ey = by - ay;
+			f = ex * ex + ey * ey;
+			f = f > 0 ? Math.max(0.0,
+					Math.min(1.0, ((cx - ax) * ex + (cy - ay) * ey) / f)) : 0.0;
+			dx = cx - (ax + f * ex);
+			dy = cy - (ay + f * ey);
+			if (dx * dx + dy * dy <= r * r) {
+				return true;
+			}
+			// Hull is counterclockwise, so the centre is inside if it is left
+			// of all edges
+			inside &= ex * (cy - ay) - ey * (cx - ax) > 0;
+		}
+		return inside;
+	}
+
+	/**
+	 * Write the cells of a binary file with observations, the cells of
+	 * name.bin are written to name.cells
+	 * 
+	 * @param args
+	 *            name of the binary file, and optionally the average number
+	 *            of observations in a tile
+	 */
+	public static void main(String[] args) throws IOException {
+		String binaryFile = args[0];
+		int pointsPerTile = args.length > 1 ? Integer.parseInt(args[1])
+				: 1 << 20;
+		String cellFile = (binaryFile.endsWith(".bin") ? binaryFile.substring(
+				0, binaryFile.length() - 4) : binaryFile) + ".cells";
+		TiledTriangulation tiled = new TiledTriangulation(
+				new BinaryObservations(binaryFile), pointsPerTile);
+		tiled.triangulate(cellFile);
+		System.out.println(tiled.getNrCells() + " cells in "
+				+ tiled.getNrTiles() + " tiles, at most "
+				+ tiled.getMaxLoaded() + " observations in memory");
+	}
+
+	/**
+	 * Write contents of buffer to channel and clear buffer
+	 * 
+	 * @param channel
+	 *            channel to write to
+	 * @param buffer
+	 *            buffer to write
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -29,7 +29,13 @@ public class Triangle {
 	private Vertex[] vertices = new Vertex[3];
 	private Vertex circumcentre;
 	private double radius;
-	private Set<Integer> edges = new HashSet<Integer>();
+	private double orientation;
+	// Edges of this triangle, in order of addition
+	private QuadEdge[] sides = new QuadEdge[3];
+	private int nrSides = 0;
+	private int index = -1;
+	// Stamp of the last insertion that visited this triangle
+	private int mark;
 
 	/**
 	 * Create a triangle
@@ -45,24 +51,94 @@ public class Triangle {
 		vertices[0] = a;
 		vertices[1] = b;
 		vertices[2] = c;
+		// Sign of orientation of the corners, positive if counterclockwise
+		orientation = Math.signum(Predicates.orient2d(a.x(), a.y(), b.x(),
+				b.y(), c.x(), c.y()));
 	}
 
 	/**
-	 * Add edge with id hash to this triangle
+	 * Add edge e to this triangle
 	 * 
-	 * @param hash
-	 *            id of edge to be added
+	 * @param e
+	 *            edge to be added
 	 */
-	public void addEdge(int hash) {
-		edges.add(hash);
+	public void addEdge(QuadEdge e) {
+		for (int i = 0; i < nrSides; i++) {
+			if (sides[i] == e) {
+				return;
+			}
+		}
+		sides[nrSides++] = e;
+	}
+
+	/**
+	 * Get number of edges of this triangle
+	 * 
+	 * @return number of edges, 3 once the triangle is complete
+	 */
+	int getNrSides() {
+		return nrSides;
+	}
+
+	/**
+	 * Get edge i of this triangle
+	 * 
+	 * @param i
+	 *            number of the edge
+	 * @return edge i
+	 */
+	QuadEdge getSide(int i) {
+		return sides[i];
 	}
 
 	/**
-	 * Get edges in this triangle
+	 * Set stamp of the last insertion that visited this triangle
 	 * 
-	 * @return edges in this triangle
+	 * @param mark
+	 *            stamp of the insertion
+	 */
+	void setMark(int mark) {
+		this.mark = mark;
+	}
+
+	/**
+	 * Get stamp of the last insertion that visited this triangle
+	 * 
+	 * @return stamp of the insertion
+	 */
+	int getMark() {
+		return mark;
+	}
+
+	/**
+	 * Set position of this triangle in the list of triangles
+	 * 
+	 * @param index
+	 *            position in the list of triangles, -1 if not in the list
+	 */
+	void setIndex(int index) {
+		this.index = index;
+	}
+
+	/**
+	 * Get position of this triangle in the list of triangles
+	 * 
+	 * @return position in the list of triangles, -1 if not in the list
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get ids of edges in this triangle
+	 * 
+	 * @return new set with ids of edges in this triangle
 	 */
 	public Set<Integer> getEdges() {
+		Set<Integer> edges = new HashSet<Integer>();
+		for (int i = 0; i < nrSides; i++) {
+			edges.add(sides[i].getID());
+		}
 		return edges;
 	}
 
@@ -76,26 +152,21 @@ public class Triangle {
 	}
 
 	/**
-	 * Check if given point is located in circumcircle
+	 * Check if given point is located strictly inside circumcircle
 	 * 
 	 * @param p
 	 *            point to be checked
-	 * @return true if point is located in circumcircle
+	 * @return true if point is located inside circumcircle
 	 */
 	public boolean inCircumcircle(Vertex p) {
-
-		// Calculate circumcentre when necessary
-		if (circumcentre == null) {
-			calcCircumcircle();
-		}
-
-		// Check whether distance between p and centre is smaller than radius
-		boolean inCircle = false;
-		if (distance(p, circumcentre) <= radius) {
-			inCircle = true;
-		}
-		return inCircle;
-
+		Vertex a = vertices[0];
+		Vertex b = vertices[1];
+		Vertex c = vertices[2];
+		// The incircle test is positive for points inside when the corners are
+		// counterclockwise, so correct for the orientation
+		return orientation
+				* Predicates.incircle(a.x(), a.y(), b.x(), b.y(), c.x(),
+						c.y(), p.x(), p.y()) > 0;
 	}
 
 	/**
@@ -0,0 +1,1099 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.Arrays;
+
+import nl.joeriadmiraal.hdr.Metrics.Counter;
+
+/**
+ * Compact Delaunay triangulation stored in primitive arrays. Vertices are
+ * numbered in order of addition, the first three are the vertices of the
+ * super triangle. Triangles are slots in the corner and adjacency arrays,
+ * slots of removed triangles are recycled. Corners of each triangle are
+ * stored counterclockwise, and neighbour i of a triangle is the triangle
+ * opposite to corner i. Vertices can be removed again, a removed vertex keeps
+ * its number but has no triangle.
+ * 
+ * @author Joeri
+ * 
+ */
+public class TriangleMesh {
+
+	/**
+	 * Number of vertices of the super triangle
+	 */
+	public static final int SUPER = 3;
+
+	// Vertices
+	private double[] xs;
+	private double[] ys;
+	private int[] vertexTriangle;
+	private int nrVertices;
+
+	// Triangles
+	private int[] corners;
+	private int[] neighbours;
+	private int[] marks;
+	private int nrSlots;
+	private int nrTriangles;
+	private int free = -1;
+	private int last;
+
+	// Kernel used to insert vertices
+	private InsertionKernel kernel = InsertionKernel.BOWYER_WATSON;
+
+	// Scratch space of insertion, reused for every vertex
+	private int epoch;
+	private int[] stack = new int[64];
+	private int[] cavity = new int[64];
+	private int[] boundary = new int[64 * 3];
+	private int[] startOf;
+	private int walks;
+
+	// Scratch space of removal: vertices of the hole, triangle and side
+	// outside each edge of the hole, and the hole as linked list
+	private int[] hole = new int[16];
+	private int[] holeOuter = new int[16];
+	private int[] holeSide = new int[16];
+	private int[] holeNext = new int[16];
+	private int[] holePrev = new int[16];
+
+	// Work counted for the metrics since the last report
+	private long nrIncircleTests, nrInserted, nrCavityTriangles, nrCreated,
+			nrReleased;
+
+	/**
+	 * Create an empty mesh with room for a number of vertices (excluding the
+	 * super triangle)
+	 * 
+	 * @param capacity
+	 *            number of vertices
+	 */
+	public TriangleMesh(int capacity) {
+		int nr = capacity + SUPER;
+		xs = new double[nr];
+		ys = new double[nr];
+		vertexTriangle = new int[nr];
+		startOf = new int[nr];
+		// A triangulation of n vertices has less than 2n triangles
+		int slots = 2 * nr + 1;
+		corners = new int[3 * slots];
+		neighbours = new int[3 * slots];
+		marks = new int[slots];
+	}
+
+	/**
+	 * Create mesh of the vertices and triangles of a snapshot, without free
+	 * slots
+	 * 
+	 * @param xs
+	 *            x-coordinates of the vertices, including the super triangle
+	 * @param ys
+	 *            y-coordinates of the vertices
+	 * @param vertexTriangle
+	 *            a triangle of every vertex, -1 for removed vertices
+	 * @param corners
+	 *            corners of the triangles
+	 * @param neighbours
+	 *            neighbours of the triangles, opposite to the corners
+	 */
+	TriangleMesh(double[] xs, double[] ys, int[] vertexTriangle,
+			int[] corners, int[] neighbours) {
+		this.xs = xs;
+		this.ys = ys;
+		this.vertexTriangle = vertexTriangle;
+		this.corners = corners;
+		this.neighbours = neighbours;
+		nrVertices = xs.length;
+		startOf = new int[nrVertices];
+		nrSlots = corners.length / 3;
+		nrTriangles = nrSlots;
+		marks = new int[nrSlots];
+		last = nrSlots - 1;
+	}
+
+	/**
+	 * Create super triangle containing the given bounding box with a wide
+	 * margin. Must be called before any other vertex is added.
+	 * 
+	 * @param xMin
+	 *            minimum x-coordinate
+	 * @param yMin
+	 *            minimum y-coordinate
+	 * @param xMax
+	 *            maximum x-coordinate
+	 * @param yMax
+	 *            maximum y-coordinate
+	 */
+	public void setSuperTriangle(double xMin, double yMin, double xMax,
+			double yMax) {
+		double cx = (xMin + xMax) / 2.0;
+		double cy = (yMin + yMax) / 2.0;
+		double r = Math.max(Math.max(xMax - xMin, yMax - yMin), 1.0);
+		addVertex(cx - 20.0 * r, cy - 10.0 * r);
+		addVertex(cx + 20.0 * r, cy - 10.0 * r);
+		addVertex(cx, cy + 20.0 * r);
+		last = newTriangle(0, 1, 2);
+		neighbours[0] = -1;
+		neighbours[1] = -1;
+		neighbours[2] = -1;
+	}
+
+	/**
+	 * Add vertex to the mesh without inserting it in the triangulation
+	 * 
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 * @return number of the vertex
+	 */
+	public int addVertex(double x, double y) {
+		if (nrVertices == xs.length) {
+			growVertices();
+		}
+		xs[nrVertices] = x;
+		ys[nrVertices] = y;
+		vertexTriangle[nrVertices] = -1;
+		return nrVertices++;
+	}
+
+	/**
+	 * Insert vertex p in the triangulation with the kernel of the mesh. The
+	 * vertex must lie inside the super triangle.
+	 * 
+	 * @param p
+	 *            number of the vertex
+	 */
+	public void insert(int p) {
+		if (kernel == InsertionKernel.LAWSON) {
+			insertFlips(p);
+		} else {
+			insertCavity(p);
+		}
+	}
+
+	/**
+	 * Insert vertex p in the triangulation with the Bowyer-Watson algorithm
+	 * 
+	 * @param p
+	 *            number of the vertex
+	 */
+	private void insertCavity(int p) {
+		double px = xs[p];
+		double py = ys[p];
+		int t = locate(px, py);
+
+		// Grow cavity from the triangle containing p, a triangle is part of
+		// the cavity if p is in its circumcircle
+		epoch += 2;
+		int inside = epoch;
+		int outside = epoch + 1;
+		int nrCavity = 0;
+		int nrBoundary = 0;
+		int top = 0;
+		int c, n;
+		marks[t] = inside;
+		stack[top++] = t;
+		while (top > 0) {
+			c = stack[--top];
+			if (nrCavity == cavity.length) {
+				cavity = Arrays.copyOf(cavity, 2 * nrCavity);
+			}
+			cavity[nrCavity++] = c;
+			for (int i = 0; i < 3; i++) {
+				n = neighbours[3 * c + i];
+				if (n >= 0 && marks[n] == inside) {
+					continue;
+				}
+				if (n >= 0 && marks[n] != outside && inCircle(n, px, py)) {
+					marks[n] = inside;
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, 2 * top);
+					}
+					stack[top++] = n;
+				} else {
+					if (n >= 0) {
+						marks[n] = outside;
+					}
+					// Edge of c opposite to corner i is on the boundary
+					if (3 * nrBoundary + 3 > boundary.length) {
+						boundary = Arrays.copyOf(boundary, 2 * boundary.length);
+					}
+					boundary[3 * nrBoundary] = c;
+					boundary[3 * nrBoundary + 1] = i;
+					boundary[3 * nrBoundary + 2] = n < 0 ? -1 : sideOf(n, c);
+					nrBoundary++;
+				}
+			}
+		}
+
+		nrInserted++;
+		nrCavityTriangles += nrCavity;
+
+		// Create a triangle between p and every boundary edge, reusing the
+		// slots of the cavity
+		int a, b, nt, side;
+		for (int k = 0; k < nrBoundary; k++) {
+			c = boundary[3 * k];
+			a = corners[3 * c + (boundary[3 * k + 1] + 1) % 3];
+			b = corners[3 * c + (boundary[3 * k + 1] + 2) % 3];
+			n = neighbours[3 * c + boundary[3 * k + 1]];
+			// Keep first corner and outer neighbour, as c will be released
+			boundary[3 * k] = a;
+			boundary[3 * k + 1] = n;
+			startOf[a] = b;
+		}
+		for (int k = 0; k < nrCavity; k++) {
+			release(cavity[k]);
+		}
+		for (int k = 0; k < nrBoundary; k++) {
+			a = boundary[3 * k];
+			b = startOf[a];
+			n = boundary[3 * k + 1];
+			side = boundary[3 * k + 2];
+			nt = newTriangle(a, b, p);
+			// Opposite to p is the triangle outside the cavity
+			neighbours[3 * nt + 2] = n;
+			if (n >= 0) {
+				neighbours[3 * n + side] = nt;
+			}
+			// Store new triangle with its first corner for linking
+			boundary[3 * k + 1] = nt;
+		}
+		for (int k = 0; k < nrBoundary; k++) {
+			startOf[boundary[3 * k]] = boundary[3 * k + 1];
+		}
+		// Link new triangles around p: the edge opposite to a of (a, b, p)
+		// is shared with the new triangle starting at b
+		int next;
+		for (int k = 0; k < nrBoundary; k++) {
+			nt = boundary[3 * k + 1];
+			next = startOf[corners[3 * nt + 1]];
+			neighbours[3 * nt] = next;
+			neighbours[3 * next + 1] = nt;
+		}
+		last = nt = boundary[3 * (nrBoundary - 1) + 1];
+		vertexTriangle[p] = nt;
+	}
+
+	/**
+	 * Insert vertex p in the triangulation with Lawson's algorithm. The
+	 * triangle containing p is split in three triangles with p as last
+	 * corner. The edge opposite to p of such a triangle is flipped if p is in
+	 * the circumcircle of the triangle on the other side, which gives two
+	 * new triangles with p as last corner to check. A vertex on an edge gives
+	 * a flat triangle, which is flipped like any other.
+	 * 
+	 * @param p
+	 *            number of the vertex
+	 */
+	private void insertFlips(int p) {
+		double px = xs[p];
+		double py = ys[p];
+		int t = locate(px, py);
+
+		// Split t = (a, b, c) in (a, b, p), (b, c, p) and (c, a, p), the
+		// first reuses the slot of t
+		int a = corners[3 * t];
+		int b = corners[3 * t + 1];
+		int c = corners[3 * t + 2];
+		int na = neighbours[3 * t];
+		int nb = neighbours[3 * t + 1];
+		int nc = neighbours[3 * t + 2];
+		int sa = na < 0 ? -1 : sideOf(na, t);
+		int sb = nb < 0 ? -1 : sideOf(nb, t);
+		int sc = nc < 0 ? -1 : sideOf(nc, t);
+		release(t);
+		int t0 = newTriangle(a, b, p);
+		int t1 = newTriangle(b, c, p);
+		int t2 = newTriangle(c, a, p);
+		setNeighbours(t0, t1, t2, nc);
+		setNeighbours(t1, t2, t0, na);
+		setNeighbours(t2, t0, t1, nb);
+		if (nc >= 0) {
+			neighbours[3 * nc + sc] = t0;
+		}
+		if (na >= 0) {
+			neighbours[3 * na + sa] = t1;
+		}
+		if (nb >= 0) {
+			neighbours[3 * nb + sb] = t2;
+		}
+		int top = 0;
+		stack[top++] = t0;
+		stack[top++] = t1;
+		stack[top++] = t2;
+
+		// Flip edge (u, v) of x = (u, v, p) with neighbour n = (d, v, u) to
+		// (u, d, p) in the slot of x and (d, v, p) in the slot of n
+		int x, n, s, u, v, d, xvp, xpu, nud, ndv;
+		int nrFlips = 0;
+		while (top > 0) {
+			x = stack[--top];
+			n = neighbours[3 * x + 2];
+			if (n < 0 || !inCircle(n, px, py)) {
+				continue;
+			}
+			u = corners[3 * x];
+			v = corners[3 * x + 1];
+			xvp = neighbours[3 * x];
+			xpu = neighbours[3 * x + 1];
+			s = sideOf(n, x);
+			d = corners[3 * n + s];
+			nud = neighbours[3 * n + (s + 1) % 3];
+			ndv = neighbours[3 * n + (s + 2) % 3];
+			// Outside neighbours that change sides
+			if (xvp >= 0) {
+				neighbours[3 * xvp + sideOf(xvp, x)] = n;
+			}
+			if (nud >= 0) {
+				neighbours[3 * nud + sideOf(nud, n)] = x;
+			}
+			corners[3 * x] = u;
+			corners[3 * x + 1] = d;
+			corners[3 * x + 2] = p;
+			setNeighbours(x, n, xpu, nud);
+			corners[3 * n] = d;
+			corners[3 * n + 1] = v;
+			corners[3 * n + 2] = p;
+			setNeighbours(n, xvp, x, ndv);
+			vertexTriangle[u] = x;
+			vertexTriangle[v] = n;
+			nrFlips++;
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			}
+			stack[top++] = x;
+			stack[top++] = n;
+		}
+		// Every flip takes one more triangle with p in its circumcircle
+		nrInserted++;
+		nrCavityTriangles += 1 + nrFlips;
+		nrCreated += 2 * nrFlips;
+		nrReleased += 2 * nrFlips;
+		last = t0;
+		vertexTriangle[p] = t0;
+	}
+
+	/**
+	 * Set the three neighbours of triangle t
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param n0
+	 *            neighbour opposite to the first corner
+	 * @param n1
+	 *            neighbour opposite to the second corner
+	 * @param n2
+	 *            neighbour opposite to the third corner
+	 */
+	private void setNeighbours(int t, int n0, int n1, int n2) {
+		neighbours[3 * t] = n0;
+		neighbours[3 * t + 1] = n1;
+		neighbours[3 * t + 2] = n2;
+	}
+
+	/**
+	 * Remove vertex p from the triangulation. The triangles around p are
+	 * removed and the star-shaped hole is triangulated again by cutting off
+	 * ears of which the circumcircle contains no other vertex of the hole, so
+	 * the triangulation stays Delaunay.
+	 * 
+	 * @param p
+	 *            number of the vertex, not of the super triangle
+	 */
+	public void remove(int p) {
+		// Walk counterclockwise around p, edge i of the hole is from vertex i
+		// to vertex i + 1
+		int first = vertexTriangle[p];
+		int t = first;
+		int nr = 0;
+		int corner, n;
+		do {
+			if (nr == hole.length) {
+				growHole();
+			}
+			if (nr == cavity.length) {
+				cavity = Arrays.copyOf(cavity, 2 * nr);
+			}
+			corner = cornerOf(t, p);
+			n = neighbours[3 * t + corner];
+			hole[nr] = corners[3 * t + (corner + 1) % 3];
+			holeOuter[nr] = n;
+			holeSide[nr] = n < 0 ? -1 : sideOf(n, t);
+			holeNext[nr] = nr + 1;
+			holePrev[nr] = nr - 1;
+			cavity[nr++] = t;
+			t = neighbours[3 * t + (corner + 1) % 3];
+		} while (t != first);
+		holeNext[nr - 1] = 0;
+		holePrev[0] = nr - 1;
+		for (int k = 0; k < nr; k++) {
+			release(cavity[k]);
+		}
+		vertexTriangle[p] = -1;
+
+		// Cut off ears until a triangle remains
+		int size = nr;
+		int j = 0;
+		int tried = 0;
+		int u, w;
+		while (size > 3) {
+			u = holePrev[j];
+			w = holeNext[j];
+			if (isDelaunayEar(u, j, w)) {
+				t = newTriangle(hole[u], hole[j], hole[w]);
+				link(t, 0, j);
+				link(t, 2, u);
+				// The new edge from u to w is edge u of the smaller hole
+				holeOuter[u] = t;
+				holeSide[u] = 1;
+				holeNext[u] = w;
+				holePrev[w] = u;
+				size--;
+				tried = 0;
+				j = u;
+			} else {
+				if (++tried > size) {
+					throw new IllegalStateException("No ear in hole of vertex "
+							+ p);
+				}
+				j = w;
+			}
+		}
+		u = holePrev[j];
+		w = holeNext[j];
+		t = newTriangle(hole[u], hole[j], hole[w]);
+		link(t, 0, j);
+		link(t, 1, w);
+		link(t, 2, u);
+		last = t;
+	}
+
+	/**
+	 * Check whether vertices u, j and w of the hole form an ear that can be
+	 * cut off: counterclockwise and no other vertex of the hole strictly
+	 * inside the circumcircle
+	 * 
+	 * @param u
+	 *            previous vertex of the hole
+	 * @param j
+	 *            vertex of the hole
+	 * @param w
+	 *            next vertex of the hole
+	 * @return true if the ear can be cut off
+	 */
+	private boolean isDelaunayEar(int u, int j, int w) {
+		int a = hole[u];
+		int b = hole[j];
+		int c = hole[w];
+		if (orientation(a, b, xs[c], ys[c]) <= 0) {
+			return false;
+		}
+		for (int m = holeNext[w]; m != u; m = holeNext[m]) {
+			nrIncircleTests++;
+			if (Predicates.incircle(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c],
+					xs[hole[m]], ys[hole[m]]) > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Make triangle t and the triangle outside an edge of the hole neighbours
+	 * 
+	 * @param t
+	 *            new triangle
+	 * @param i
+	 *            corner of t opposite to the edge
+	 * @param edge
+	 *            edge of the hole
+	 */
+	private void link(int t, int i, int edge) {
+		int n = holeOuter[edge];
+		neighbours[3 * t + i] = n;
+		if (n >= 0) {
+			neighbours[3 * n + holeSide[edge]] = t;
+		}
+	}
+
+	/**
+	 * Make room for a larger hole
+	 */
+	private void growHole() {
+		int length = 2 * hole.length;
+		hole = Arrays.copyOf(hole, length);
+		holeOuter = Arrays.copyOf(holeOuter, length);
+		holeSide = Arrays.copyOf(holeSide, length);
+		holeNext = Arrays.copyOf(holeNext, length);
+		holePrev = Arrays.copyOf(holePrev, length);
+	}
+
+	/**
+	 * Find triangle containing point (px, py) by walking from the last created
+	 * triangle. Every step crosses an edge that has the point on its other
+	 * side.
+	 * 
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @return triangle containing the point
+	 */
+	public int locate(double px, double py) {
+		int t = last;
+		int steps = 0;
+		boolean moved = true;
+		int a, b, i;
+		while (moved && steps <= nrTriangles) {
+			moved = false;
+			// Vary first edge to be checked, so degenerate walks do not cycle
+			walks++;
+			for (int k = 0; k < 3; k++) {
+				i = (k + walks) % 3;
+				a = corners[3 * t + (i + 1) % 3];
+				b = corners[3 * t + (i + 2) % 3];
+				if (orientation(a, b, px, py) < 0
+						&& neighbours[3 * t + i] >= 0) {
+					t = neighbours[3 * t + i];
+					moved = true;
+					steps++;
+					break;
+				}
+			}
+		}
+		if (!moved) {
+			return t;
+		}
+		// Walk failed, check all triangles
+		for (t = 0; t < nrSlots; t++) {
+			if (isTriangle(t) && contains(t, px, py)) {
+				return t;
+			}
+		}
+		throw new IllegalStateException("Point outside super triangle");
+	}
+
+	/**
+	 * Find the vertex nearest to point (px, py), so the point lies in its
+	 * Voronoi cell. Starts at vertex v and moves to a nearer neighbour until
+	 * there is none. The super triangle is not infinitely far away, so near
+	 * the convex hull edges of the Delaunay triangulation of the vertices
+	 * can be missing and such a walk can end too early at a vertex next to
+	 * the super triangle. Every vertex of the convex hull is next to the
+	 * super triangle, and a point outside the hull is nearest to a vertex of
+	 * the hull, so then all vertices next to the super triangle are checked
+	 * and the walk continues from the nearest of them if it is nearer. The
+	 * mesh is not changed.
+	 * 
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @param v
+	 *            vertex to start from, not of the super triangle
+	 * @return nearest vertex not of the super triangle
+	 */
+	public int nearest(double px, double py, int v) {
+		v = walk(px, py, v);
+		int hull;
+		while (isNextToSuper(v)) {
+			hull = nearestNextToSuper(px, py);
+			if (distance(hull, px, py) >= distance(v, px, py)) {
+				break;
+			}
+			v = walk(px, py, hull);
+		}
+		return v;
+	}
+
+	/**
+	 * Walk from vertex v to a nearer neighbour until there is none
+	 * 
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @param v
+	 *            vertex to start from, not of the super triangle
+	 * @return vertex without nearer neighbours, not of the super triangle
+	 */
+	private int walk(double px, double py, int v) {
+		double best = distance(v, px, py);
+		int next = v;
+		int first, t, corner, c;
+		double d;
+		while (next >= 0) {
+			v = next;
+			next = -1;
+			// Walk counterclockwise around v
+			first = vertexTriangle[v];
+			t = first;
+			do {
+				corner = cornerOf(t, v);
+				c = corners[3 * t + (corner + 1) % 3];
+				d = distance(c, px, py);
+				if (c >= SUPER && d < best) {
+					next = c;
+					best = d;
+				}
+				t = neighbours[3 * t + (corner + 1) % 3];
+			} while (t != first);
+		}
+		return v;
+	}
+
+	/**
+	 * Check whether vertex v is a neighbour of a vertex of the super
+	 * triangle
+	 * 
+	 * @param v
+	 *            vertex, not of the super triangle
+	 * @return true if v is next to the super triangle
+	 */
+	private boolean isNextToSuper(int v) {
+		int first = vertexTriangle[v];
+		int t = first;
+		int corner;
+		do {
+			corner = cornerOf(t, v);
+			if (corners[3 * t + (corner + 1) % 3] < SUPER) {
+				return true;
+			}
+			t = neighbours[3 * t + (corner + 1) % 3];
+		} while (t != first);
+		return false;
+	}
+
+	/**
+	 * Find the nearest of the vertices next to the super triangle. The
+	 * triangles around a vertex of the super triangle form a fan between two
+	 * edges of the super triangle, which is walked clockwise to its start
+	 * and then counterclockwise to its end.
+	 * 
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @return nearest vertex next to the super triangle
+	 */
+	private int nearestNextToSuper(double px, double py) {
+		int nearest = -1;
+		double best = Double.POSITIVE_INFINITY;
+		int t, n, corner, c;
+		double d;
+		for (int s = 0; s < SUPER; s++) {
+			t = vertexTriangle[s];
+			while ((n = neighbours[3 * t + (cornerOf(t, s) + 2) % 3]) >= 0) {
+				t = n;
+			}
+			while (t >= 0) {
+				corner = cornerOf(t, s);
+				for (int i = 1; i < 3; i++) {
+					c = corners[3 * t + (corner + i) % 3];
+					d = distance(c, px, py);
+					if (c >= SUPER && d < best) {
+						nearest = c;
+						best = d;
+					}
+				}
+				t = neighbours[3 * t + (corner + 1) % 3];
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Calculate squared distance between vertex v and point (px, py)
+	 * 
+	 * @param v
+	 *            vertex
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @return squared distance
+	 */
+	private double distance(int v, double px, double py) {
+		double dx = xs[v] - px;
+		double dy = ys[v] - py;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Check whether point (px, py) is in the circumcircle of triangle t
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @return true if point is strictly inside the circumcircle
+	 */
+	private boolean inCircle(int t, double px, double py) {
+		int a = corners[3 * t];
+		int b = corners[3 * t + 1];
+		int c = corners[3 * t + 2];
+		nrIncircleTests++;
+		return Predicates.incircle(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c],
+				px, py) > 0;
+	}
+
+	/**
+	 * Calculate orientation of point (px, py) with respect to edge from a to
+	 * b
+	 * 
+	 * @param a
+	 *            first vertex of edge
+	 * @param b
+	 *            second vertex of edge
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @return positive if point is left of the edge, negative if right and
+	 *         zero if on the line through the edge
+	 */
+	private double orientation(int a, int b, double px, double py) {
+		return Predicates.orient2d(xs[a], ys[a], xs[b], ys[b], px, py);
+	}
+
+	/**
+	 * Check whether triangle t contains point (px, py)
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @return true if point is inside or on the boundary of t
+	 */
+	private boolean contains(int t, double px, double py) {
+		for (int i = 0; i < 3; i++) {
+			if (orientation(corners[3 * t + (i + 1) % 3],
+					corners[3 * t + (i + 2) % 3], px, py) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether point (px, py) is strictly inside the super triangle, so
+	 * it can be inserted
+	 * 
+	 * @param px
+	 *            x-coordinate of point
+	 * @param py
+	 *            y-coordinate of point
+	 * @return true if point is inside the super triangle
+	 */
+	public boolean isInside(double px, double py) {
+		return orientation(0, 1, px, py) > 0 && orientation(1, 2, px, py) > 0
+				&& orientation(2, 0, px, py) > 0;
+	}
+
+	/**
+	 * Get the side of triangle t at which triangle n is its neighbour
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param n
+	 *            neighbour of t
+	 * @return index of corner of t opposite to n
+	 */
+	private int sideOf(int t, int n) {
+		if (neighbours[3 * t] == n) {
+			return 0;
+		}
+		if (neighbours[3 * t + 1] == n) {
+			return 1;
+		}
+		return 2;
+	}
+
+	/**
+	 * Create triangle with counterclockwise corners a, b and c in a free slot
+	 * 
+	 * @param a
+	 *            first corner
+	 * @param b
+	 *            second corner
+	 * @param c
+	 *            third corner
+	 * @return slot of the triangle
+	 */
+	private int newTriangle(int a, int b, int c) {
+		int t;
+		if (free >= 0) {
+			t = free;
+			free = neighbours[3 * t];
+		} else {
+			if (3 * nrSlots == corners.length) {
+				growTriangles();
+			}
+			t = nrSlots++;
+		}
+		corners[3 * t] = a;
+		corners[3 * t + 1] = b;
+		corners[3 * t + 2] = c;
+		vertexTriangle[a] = t;
+		vertexTriangle[b] = t;
+		vertexTriangle[c] = t;
+		nrTriangles++;
+		nrCreated++;
+		return t;
+	}
+
+	/**
+	 * Put slot of triangle t on the free list
+	 * 
+	 * @param t
+	 *            triangle to be removed
+	 */
+	private void release(int t) {
+		corners[3 * t] = -1;
+		neighbours[3 * t] = free;
+		free = t;
+		nrTriangles--;
+		nrReleased++;
+	}
+
+	/**
+	 * Give work counted since the last report to the metrics
+	 */
+	void reportCounts() {
+		HdrMetrics.count(Counter.INCIRCLE_TESTS, nrIncircleTests);
+		HdrMetrics.count(Counter.INSERTED_VERTICES, nrInserted);
+		HdrMetrics.count(Counter.CAVITY_TRIANGLES, nrCavityTriangles);
+		HdrMetrics.count(Counter.TRIANGLES_CREATED, nrCreated);
+		HdrMetrics.count(Counter.TRIANGLES_REMOVED, nrReleased);
+		nrIncircleTests = nrInserted = nrCavityTriangles = 0;
+		nrCreated = nrReleased = 0;
+	}
+
+	/**
+	 * Make room for more vertices
+	 */
+	private void growVertices() {
+		int nr = 2 * xs.length;
+		xs = Arrays.copyOf(xs, nr);
+		ys = Arrays.copyOf(ys, nr);
+		vertexTriangle = Arrays.copyOf(vertexTriangle, nr);
+		startOf = Arrays.copyOf(startOf, nr);
+	}
+
+	/**
+	 * Make room for more triangles
+	 */
+	private void growTriangles() {
+		int slots = 2 * marks.length;
+		corners = Arrays.copyOf(corners, 3 * slots);
+		neighbours = Arrays.copyOf(neighbours, 3 * slots);
+		marks = Arrays.copyOf(marks, slots);
+	}
+
+	/**
+	 * Set kernel used to insert vertices from now on
+	 * 
+	 * @param kernel
+	 *            insertion kernel
+	 */
+	public void setKernel(InsertionKernel kernel) {
+		this.kernel = kernel;
+	}
+
+	/**
+	 * Get kernel used to insert vertices
+	 * 
+	 * @return insertion kernel
+	 */
+	public InsertionKernel getKernel() {
+		return kernel;
+	}
+
+	/**
+	 * Get number of vertices, including the super triangle
+	 * 
+	 * @return number of vertices
+	 */
+	public int getNrVertices() {
+		return nrVertices;
+	}
+
+	/**
+	 * Get number of triangles, including those at the super triangle
+	 * 
+	 * @return number of triangles
+	 */
+	public int getNrTriangles() {
+		return nrTriangles;
+	}
+
+	/**
+	 * Get number of triangle slots, every triangle has a slot below this
+	 * number
+	 * 
+	 * @return number of triangle slots
+	 */
+	public int getNrSlots() {
+		return nrSlots;
+	}
+
+	/**
+	 * Check whether slot t contains a triangle
+	 * 
+	 * @param t
+	 *            slot
+	 * @return true if slot t contains a triangle
+	 */
+	public boolean isTriangle(int t) {
+		return corners[3 * t] >= 0;
+	}
+
+	/**
+	 * Check whether triangle t has a vertex of the super triangle
+	 * 
+	 * @param t
+	 *            triangle
+	 * @return true if t has a vertex of the super triangle
+	 */
+	public boolean isSuper(int t) {
+		return corners[3 * t] < SUPER || corners[3 * t + 1] < SUPER
+				|| corners[3 * t + 2] < SUPER;
+	}
+
+	/**
+	 * Get corner i of triangle t
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param i
+	 *            corner number (0, 1 or 2)
+	 * @return vertex at corner i
+	 */
+	public int getCorner(int t, int i) {
+		return corners[3 * t + i];
+	}
+
+	/**
+	 * Get neighbour i of triangle t
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param i
+	 *            corner number (0, 1 or 2)
+	 * @return triangle opposite to corner i, -1 if there is none
+	 */
+	public int getNeighbour(int t, int i) {
+		return neighbours[3 * t + i];
+	}
+
+	/**
+	 * Get a triangle with vertex v as corner
+	 * 
+	 * @param v
+	 *            vertex
+	 * @return triangle with v as corner, -1 if v is not inserted or removed
+	 */
+	public int getTriangle(int v) {
+		return vertexTriangle[v];
+	}
+
+	/**
+	 * Get index of vertex v in the corners of triangle t
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param v
+	 *            vertex
+	 * @return corner number of v in t
+	 */
+	public int cornerOf(int t, int v) {
+		if (corners[3 * t] == v) {
+			return 0;
+		}
+		if (corners[3 * t + 1] == v) {
+			return 1;
+		}
+		return 2;
+	}
+
+	/**
+	 * Get x-coordinate of vertex v
+	 * 
+	 * @param v
+	 *            vertex
+	 * @return x-coordinate
+	 */
+	public double x(int v) {
+		return xs[v];
+	}
+
+	/**
+	 * Get y-coordinate of vertex v
+	 * 
+	 * @param v
+	 *            vertex
+	 * @return y-coordinate
+	 */
+	public double y(int v) {
+		return ys[v];
+	}
+
+	/**
+	 * Calculate centre of circumcircle of triangle t
+	 * 
+	 * @param t
+	 *            triangle
+	 * @param centre
+	 *            array of length 2 to store x and y-coordinate of the centre
+	 */
+	public void getCentre(int t, double[] centre) {
+		int a = corners[3 * t];
+		int b = corners[3 * t + 1];
+		int c = corners[3 * t + 2];
+		double bx = xs[b] - xs[a];
+		double by = ys[b] - ys[a];
+		double cx = xs[c] - xs[a];
+		double cy = ys[c] - ys[a];
+		double d = 2.0 * (bx * cy - by * cx);
+		double b2 = bx * bx + by * by;
+		double c2 = cx * cx + cy * cy;
+		centre[0] = xs[a] + (cy * b2 - by * c2) / d;
+		centre[1] = ys[a] + (bx * c2 - cx * b2) / d;
+	}
+
+	/**
+	 * Calculate area of triangle t
+	 * 
+	 * @param t
+	 *            triangle
+	 * @return area of triangle t
+	 */
+	public double getArea(int t) {
+		int a = corners[3 * t];
+		int b = corners[3 * t + 1];
+		int c = corners[3 * t + 2];
+		return 0.5 * ((xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a])
+				* (xs[c] - xs[a]));
+	}
+}
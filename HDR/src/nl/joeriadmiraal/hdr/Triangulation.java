@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2013, Joeri Admiraal
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES WITH REGARD
+ * TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR
+ * PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package nl.joeriadmiraal.hdr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Delaunay triangulation of a set of observations, with the vertices, edges
+ * and triangles used to compute the Voronoi diagram
+ * 
+ * @author Joeri
+ * 
+ */
+public abstract class Triangulation {
+
+	protected List<Vertex> vertices;
+	protected List<Triangle> triangles = new ArrayList<Triangle>();
+	protected Map<Integer, QuadEdge> edges = new HashMap<Integer, QuadEdge>();
+	protected int nrEdges = 0;
+	protected Bounds bounds = new Bounds();
+
+	/**
+	 * Create vertices of observations, duplicate observations are added to
+	 * the first vertex with the same coordinates. Duplicates are found in a
+	 * PointTable on the bits of the coordinates, with the number of the
+	 * vertex as value.
+	 * 
+	 * @param observations
+	 *            observations to create vertices of
+	 */
+	protected void readObservations(Observations observations) {
+
+		int nrOfVertices = observations.size();
+		vertices = new ArrayList<Vertex>(nrOfVertices);
+		PointTable coords = new PointTable(nrOfVertices);
+
+		// Add observations to list of vertices (and also calculate minimum and
+		// maximum y-coordinates for later)
+		Vertex temp;
+		int first;
+		double x, y;
+		for (int i = 0; i < nrOfVertices; i++) {
+			x = observations.x(i);
+			y = observations.y(i);
+			// If vertex exists, add duplicate
+			first = coords.putIfAbsent(x, y, vertices.size());
+			if (first >= 0) {
+				vertices.get(first).addDuplicate();
+				continue;
+			}
+			temp = new Vertex(x, y);
+			temp.setID(i);
+			vertices.add(temp);
+			bounds.add(temp.x(), temp.y());
+		}
+	}
+
+	/**
+	 * Add triangle t to the list of triangles
+	 * 
+	 * @param t
+	 *            triangle to be added
+	 */
+	protected void addTriangle(Triangle t) {
+		t.setIndex(triangles.size());
+		triangles.add(t);
+	}
+
+	/**
+	 * Remove triangle t from the list of triangles in constant time, by
+	 * moving the last triangle of the list to its place
+	 * 
+	 * @param t
+	 *            triangle to be removed
+	 */
+	protected void removeFromList(Triangle t) {
+		Triangle last = triangles.remove(triangles.size() - 1);
+		if (last != t) {
+			triangles.set(t.getIndex(), last);
+			last.setIndex(t.getIndex());
+		}
+		t.setIndex(-1);
+	}
+
+	/**
+	 * Create edge between vertices a and b with the next free id
+	 * 
+	 * @param a
+	 *            starting vertex
+	 * @param b
+	 *            ending vertex
+	 * @param left
+	 *            face on left side (or null)
+	 * @param right
+	 *            face on right side (or null)
+	 * @return created edge
+	 */
+	protected QuadEdge addEdge(Vertex a, Vertex b, Triangle left,
+			Triangle right) {
+		QuadEdge e = new QuadEdge(a, b, left, right, nrEdges);
+		edges.put(nrEdges, e);
+		nrEdges++;
+		return e;
+	}
+
+	/**
+	 * Calculate Voronoi data for all vertices (area)
+	 */
+	public void calcVoronoi() {
+		// Generate voronoi data for each point
+		for (Vertex v : vertices) {
+			// Get voronoi cell vertices
+			for (int i = 0; i < v.getEdges().size(); i++) {
+				v.addVoronoiEdge(edges.get(v.getEdges().get(i)));
+			}
+			// Calculate area
+			v.calcArea();
+		}
+	}
+
+	/**
+	 * Calculate Voronoi data for all vertices (area) in parallel. Centres of
+	 * all triangles are calculated first, after that every thread calculates
+	 * the cells of its own part of the vertices.
+	 * 
+	 * @param pool
+	 *            pool to run the parallel tasks in
+	 */
+	public void calcVoronoi(ForkJoinPool pool) {
+		pool.invoke(new CentreTask(0, triangles.size()));
+		pool.invoke(new CellTask(0, vertices.size()));
+	}
+
+	/**
+	 * Task calculating centres of triangles
+	 */
+	private class CentreTask extends RangeTask {
+
+		private static final long serialVersionUID = 1L;
+
+		CentreTask(int from, int to) {
+			super(from, to);
+		}
+
+		protected void process(int from, int to) {
+			for (int i = from; i < to; i++) {
+				triangles.get(i).getCentre();
+			}
+		}
+
+		protected RangeTask split(int from, int to) {
+			return new CentreTask(from, to);
+		}
+	}
+
+	/**
+	 * Task calculating Voronoi cells of vertices
+	 */
+	private class CellTask extends RangeTask {
+
+		private static final long serialVersionUID = 1L;
+
+		CellTask(int from, int to) {
+			super(from, to);
+		}
+
+		protected void process(int from, int to) {
+			Vertex v;
+			for (int i = from; i < to; i++) {
+				v = vertices.get(i);
+				for (int k = 0; k < v.getEdges().size(); k++) {
+					v.addVoronoiEdge(edges.get(v.getEdges().get(k)));
+				}
+				v.calcArea();
+			}
+		}
+
+		protected RangeTask split(int from, int to) {
+			return new CellTask(from, to);
+		}
+	}
+
+	/**
+	 * Get neighbours of all vertices in cyclic order
+	 * 
+	 * @return neighbour rings of all vertices
+	 */
+	public NeighbourRings getNeighbourRings() {
+		return new NeighbourRings(vertices);
+	}
+
+	/**
+	 * Get triangles
+	 * 
+	 * @return list of triangles
+	 */
+	public List<Triangle> getTriangles() {
+		return triangles;
+	}
+
+	/**
+	 * Get vertices
+	 * 
+	 * @return vertices
+	 */
+	public List<Vertex> getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Get edges
+	 * 
+	 * @return edges
+	 */
+	public Map<Integer, QuadEdge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Get area of triangulation
+	 * 
+	 * @return area of triangulation
+	 */
+	public double getArea() {
+		double area = 0.0;
+		// Get all areas of all triangles
+		for (Triangle t : triangles) {
+			area += t.getArea();
+		}
+		return area;
+	}
+
+	/**
+	 * Get dimensions of data set
+	 * 
+	 * @return dimensions of data set
+	 */
+	public Bounds getDimensions() {
+		return bounds;
+	}
+}
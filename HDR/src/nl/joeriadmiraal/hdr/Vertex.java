@@ -18,9 +18,7 @@ package nl.joeriadmiraal.hdr;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Class to create a point in 2D space
@@ -31,9 +29,9 @@ import java.util.Set;
 public class Vertex {
 
 	private double[] coords = new double[2];
-	private Set<Integer> edges = new HashSet<Integer>();
+	private IntSet edges = new IntSet();
 	private List<Vertex> voronoi = new ArrayList<Vertex>();
-	private Set<Integer> neighbours = new HashSet<Integer>();
+	private IntSet neighbours = new IntSet();
 	private boolean bound;
 	private boolean inHDR;
 	private double area;
@@ -91,6 +89,13 @@ public class Vertex {
 		duplicates += 1;
 	}
 
+	/**
+	 * Decrease amount of duplicates
+	 */
+	public void removeDuplicate() {
+		duplicates -= 1;
+	}
+
 	/**
 	 * Get the amount of duplicates of this vertex
 	 * 
@@ -134,7 +139,7 @@ public class Vertex {
 	 * 
 	 * @return list of id's of neighbours
 	 */
-	public Set<Integer> getNeighbours() {
+	public IntSet getNeighbours() {
 		return neighbours;
 	}
 
@@ -171,7 +176,7 @@ public class Vertex {
 	 * 
 	 * @return set of edges connected to this vertex
 	 */
-	public Set<Integer> getEdges() {
+	public IntSet getEdges() {
 		return edges;
 	}
 
@@ -210,10 +215,9 @@ public class Vertex {
 	 *            id of edge to be added
 	 */
 	public void addEdge(int hash) {
-		if (edges.contains(hash))
+		if (!edges.add(hash))
 			throw new IllegalArgumentException(
 					"Vertex already contains this edge");
-		edges.add(hash);
 	}
 
 	/**
@@ -15,93 +15,125 @@
 
 package nl.joeriadmiraal.hdr;
 
-import java.awt.Rectangle;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import nl.joeriadmiraal.hdr.Metrics.Counter;
+import nl.joeriadmiraal.hdr.Metrics.Phase;
+
 /**
  * Implementation of Bowyer-Watson algorithm for Delaunay triangulation
  * 
  * @author Joeri
  * 
  */
-public class Watson {
+public class Watson extends Triangulation {
 
-	private List<Vertex> vertices;
 	private List<Vertex> stVertices = new ArrayList<Vertex>(3);
-	private List<Triangle> triangles = new ArrayList<Triangle>();
-	private Map<Integer, QuadEdge> edges = new HashMap<Integer, QuadEdge>();
-	private int nrEdges = 0;
-	private Rectangle bounds = new Rectangle();
+	private Triangle lastTriangle;
+
+	// Scratch space of insertion, reused for every vertex: stamp of the
+	// current insertion, triangles to check and of the cavity, edges of its
+	// boundary and inside it, and the new edge from each boundary vertex
+	// to the inserted vertex by id (shifted past the super triangle)
+	private int epoch;
+	private Triangle[] stack = new Triangle[64];
+	private Triangle[] cavity = new Triangle[64];
+	private QuadEdge[] boundary = new QuadEdge[64];
+	private QuadEdge[] inner = new QuadEdge[64];
+	private QuadEdge[] spokes;
+	private int[] spokeMarks;
+	// Work counted for the metrics
+	private long nrIncircleTests, nrCavityTriangles, nrCreated, nrRemoved;
 
 	/**
-	 * Create Delaunay triangulation for observations
+	 * Create Delaunay triangulation for observations, inserting them in order
+	 * of x-coordinate
 	 * 
 	 * @param observations
 	 *            observations to create delaunay triangulation
 	 */
 	public Watson(double[][] observations) {
+		this(new ArrayObservations(observations));
+	}
 
-		int nrOfVertices = observations.length;
-		vertices = new ArrayList<Vertex>(nrOfVertices);
-		Map<Double, Map<Double, Vertex>> coords = new HashMap<Double, Map<Double, Vertex>>();
-
-		// Add observations to list of vertices (and also calculate minimum and
-		// maximum y-coordinates for later)
-		Vertex temp;
-		boolean xExists;
-		for (int i = 0; i < nrOfVertices; i++) {
-			xExists = false;
-			// Check if vertex is a duplicate
-			// First check x-coordinate
-			if (coords.containsKey(observations[i][0])) {
-				xExists = true;
-				// Then check y-coordinate
-				if (coords.get(observations[i][0]).containsKey(
-						observations[i][1])) {
-					// If vertex exists, add duplicate
-					coords.get(observations[i][0]).get(observations[i][1])
-							.addDuplicate();
-					System.out.println("Duplicate");
-					break;
-				}
-			}
-			temp = new Vertex(observations[i][0], observations[i][1]);
-			temp.setID(i);
-			vertices.add(temp);
-			bounds.add(temp.x(), temp.y());
-			// Add vertex to temporary lists to check for duplicates
-			// If x-coordinate does not exists, create new map
-			if (!xExists) {
-				coords.put(observations[i][0], new HashMap<Double, Vertex>());
-			}
-			// Add vertex to map
-			coords.get(observations[i][0]).put(observations[i][1], temp);
-		}
+	/**
+	 * Create Delaunay triangulation for observations
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param order
+	 *            order in which observations are inserted
+	 */
+	public Watson(double[][] observations, InsertionOrder order) {
+		this(new ArrayObservations(observations), order);
+	}
 
-		// Sort observations on x-coordinate
-		Collections.sort(vertices, new Comparator<Vertex>() {
-			public int compare(Vertex a, Vertex b) {
-				return new Double(a.x()).compareTo(new Double(b.x()));
-			}
-		});
+	/**
+	 * Create Delaunay triangulation for observations, inserting them in order
+	 * of x-coordinate
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 */
+	public Watson(Observations observations) {
+		this(observations, InsertionOrder.X_SORT);
+	}
+
+	/**
+	 * Create Delaunay triangulation for observations
+	 * 
+	 * @param observations
+	 *            observations to create delaunay triangulation
+	 * @param order
+	 *            order in which observations are inserted
+	 */
+	public Watson(Observations observations, InsertionOrder order) {
+
+		// Create vertices of observations
+		long start = HdrMetrics.start();
+		readObservations(observations);
+		spokes = new QuadEdge[NeighbourRings.nrIDs(vertices) + 3];
+		spokeMarks = new int[spokes.length];
+		HdrMetrics.stop(Phase.INGESTION, start);
+
+		// Sort observations in insertion order
+		start = HdrMetrics.start();
+		SpatialSort.sort(vertices, order, bounds);
+		HdrMetrics.stop(Phase.SORTING, start);
 
 		// Create super triangle (inspired by Sierpinski)
+		start = HdrMetrics.start();
 		createSuperTriangle();
+		HdrMetrics.stop(Phase.SUPER_TRIANGLE, start);
 
 		// Add points one by one
+		start = HdrMetrics.start();
 		for (Vertex v : vertices) {
 			addPoint(v);
 		}
+		HdrMetrics.stop(Phase.INSERTION, start);
 
 		// Remove super triangle
+		start = HdrMetrics.start();
 		removeST();
+		HdrMetrics.stop(Phase.REMOVE_SUPER, start);
+		reportCounts();
+	}
+
+	/**
+	 * Give counted work to the metrics and reset the counters
+	 */
+	private void reportCounts() {
+		HdrMetrics.count(Counter.INCIRCLE_TESTS, nrIncircleTests);
+		HdrMetrics.count(Counter.INSERTED_VERTICES, vertices.size());
+		HdrMetrics.count(Counter.CAVITY_TRIANGLES, nrCavityTriangles);
+		HdrMetrics.count(Counter.TRIANGLES_CREATED, nrCreated);
+		HdrMetrics.count(Counter.TRIANGLES_REMOVED, nrRemoved);
+		nrIncircleTests = nrCavityTriangles = nrCreated = nrRemoved = 0;
 	}
 
 	/**
@@ -119,36 +151,41 @@ public class Watson {
 	private void createSuperTriangle() {
 		// Calculate coordinates of the three vertices of super triangle (left,
 		// right and top)
-		double xMin = bounds.getMinX();
-		double xMax = bounds.getMaxX();
-		double yMin = bounds.getMinY();
-		double yMax = bounds.getMaxY();
+		// The square is wider than the bounds at each side, so that no
+		// observation lies on an edge of the super triangle and few edges of
+		// the convex hull are lost when the super triangle is removed
+		double margin = 1.0 + 0.5 * Math.max(bounds.getWidth(),
+				bounds.getHeight());
+		double xMin = bounds.getMinX() - margin;
+		double xMax = bounds.getMaxX() + margin;
+		double yMin = bounds.getMinY() - margin;
+		double yMax = bounds.getMaxY() + margin;
 		double xLeft = 1.5 * xMin - 0.5 * xMax;
 		double xRight = -0.5 * xMin + 1.5 * xMax;
 		double xTop = 0.5 * xMin + 0.5 * xMax;
 		double yTop = -yMin + 2 * yMax;
 
-		// Create vertices of super triangle
+		// Create vertices of super triangle, with negative id's so they are
+		// not mistaken for observations in the neighbours of a vertex
 		Vertex left = new Vertex(xLeft, yMin);
+		left.setID(-1);
 		stVertices.add(left);
 		Vertex right = new Vertex(xRight, yMin);
+		right.setID(-2);
 		stVertices.add(right);
 		Vertex top = new Vertex(xTop, yTop);
+		top.setID(-3);
 		stVertices.add(top);
 
 		// Create triangle
-		triangles.add(new Triangle(left, top, right));
+		lastTriangle = new Triangle(left, top, right);
+		addTriangle(lastTriangle);
+		nrCreated++;
 
 		// Create edges
-		edges.put(nrEdges, new QuadEdge(left, top, null, triangles.get(0),
-				nrEdges));
-		nrEdges++;
-		edges.put(nrEdges, new QuadEdge(top, right, null, triangles.get(0),
-				nrEdges));
-		nrEdges++;
-		edges.put(nrEdges, new QuadEdge(right, left, null, triangles.get(0),
-				nrEdges));
-		nrEdges++;
+		addEdge(left, top, null, lastTriangle);
+		addEdge(top, right, null, lastTriangle);
+		addEdge(right, left, null, lastTriangle);
 	}
 
 	/**
@@ -159,7 +196,8 @@ public class Watson {
 		Set<Triangle> stTriangles = new HashSet<Triangle>();
 		// Get all edges and triangles connected to vertices of super triangle
 		for (Vertex v : stVertices) {
-			for (int i : v.getEdges()) {
+			for (int k = 0; k < v.getEdges().size(); k++) {
+				int i = v.getEdges().get(k);
 				stEdges.add(i);
 				for (Triangle t : edges.get(i).getTriangles()) {
 					stTriangles.add(t);
@@ -170,161 +208,247 @@ public class Watson {
 		for (Triangle t : stTriangles) {
 			removeTriangle(t);
 		}
+		nrRemoved += stTriangles.size();
 
 		// Remove all edges connected to vertices of super triangle
 		for (int i : stEdges) {
-			removeEdge(i);
+			removeEdge(edges.get(i));
 		}
 	}
 
 	/**
-	 * Add vertex v to the Delaunay triangulation
+	 * Add vertex v to the Delaunay triangulation. The cavity of triangles
+	 * with v in their circumcircle is grown from the triangle containing v,
+	 * marking triangles with the stamp of this insertion instead of keeping
+	 * them in sets, so no scratch space is allocated per vertex.
 	 * 
 	 * @param v
 	 *            vertex to be added
 	 */
 	private void addPoint(Vertex v) {
-		// Find faulty triangles and get vertices of boundaries
-		List<Triangle> faulty = new ArrayList<Triangle>();
-		Set<Integer> bounds = new HashSet<Integer>();
-		Set<Integer> toRemove = new HashSet<Integer>();
-
-		// This uses a while loop instead
-		Set<Triangle> toCheck = new HashSet<Triangle>();
-		Set<Triangle> ok = new HashSet<Triangle>();
-		int i = triangles.size() - 1;
-		boolean found = false;
-		Triangle temp;
+		// Find faulty triangles, a triangle is faulty if v is in its
+		// circumcircle
+		epoch += 2;
+		int inside = epoch;
+		int outside = epoch + 1;
+		int nrCavity = 0;
+		int top = 0;
+		Triangle temp, neighbour;
 		// Find a faulty triangle (there has to be at least one)
-		while (!found) {
-			temp = triangles.get(i);
-			if (temp.inCircumcircle(v)) {
-				toCheck.add(temp);
-				found = true;
+		temp = locate(v);
+		temp.setMark(inside);
+		stack[top++] = temp;
+		// Check neighbours of faulty triangles
+		while (top > 0) {
+			temp = stack[--top];
+			if (nrCavity == cavity.length) {
+				cavity = Arrays.copyOf(cavity, 2 * nrCavity);
 			}
-			i--;
-		}
-		// Check neighbours of faulty triangle and their neighbours
-		while (!toCheck.isEmpty()) {
-			// Process next triangle
-			temp = toCheck.iterator().next();
-			// If it is faulty, mark edges
-			if (temp.inCircumcircle(v)) {
-				faulty.add(temp);
-				// Find edges that should be removed (both triangles of edge
-				// are
-				// faulty)
-				for (Integer edgeID : temp.getEdges()) {
-					// If this is second triangle of edge, this is faulty
-					if (bounds.contains(edgeID)) {
-						toRemove.add(edgeID);
-						bounds.remove(edgeID);
-					}
-					// If this is first triangle of edge, add to bounds
-					else {
-						bounds.add(edgeID);
+			cavity[nrCavity++] = temp;
+			for (int i = 0; i < temp.getNrSides(); i++) {
+				neighbour = temp.getSide(i).getOther(temp);
+				// Only process if it exists and is not processed yet
+				if (neighbour == null || neighbour.getMark() == inside
+						|| neighbour.getMark() == outside) {
+					continue;
+				}
+				nrIncircleTests++;
+				if (neighbour.inCircumcircle(v)) {
+					neighbour.setMark(inside);
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, 2 * top);
 					}
+					stack[top++] = neighbour;
+				} else {
+					neighbour.setMark(outside);
 				}
-				// Find neighbours of faulty triangle
-				for (int edge : temp.getEdges()) {
-					for (Triangle neighbour : edges.get(edge).getTriangles()) {
-						// Only process if it exists
-						if (neighbour != null) {
-							// Check if it is not already processed
-							if (!toCheck.contains(neighbour)
-									&& !ok.contains(neighbour)
-									&& !faulty.contains(neighbour)) {
-								toCheck.add(neighbour);
-							}
-						}
+			}
+		}
+
+		// Edges between two faulty triangles are removed, edges between a
+		// faulty triangle and a triangle outside the cavity are boundaries
+		int nrBoundary = 0;
+		int nrInner = 0;
+		QuadEdge side;
+		for (int k = 0; k < nrCavity; k++) {
+			temp = cavity[k];
+			for (int i = 0; i < temp.getNrSides(); i++) {
+				side = temp.getSide(i);
+				neighbour = side.getOther(temp);
+				if (neighbour == null || neighbour.getMark() != inside) {
+					if (nrBoundary == boundary.length) {
+						boundary = Arrays.copyOf(boundary, 2 * nrBoundary);
 					}
+					boundary[nrBoundary++] = side;
+				} else if (temp.getIndex() < neighbour.getIndex()) {
+					// Every inner edge is found from both sides, keep one
+					if (nrInner == inner.length) {
+						inner = Arrays.copyOf(inner, 2 * nrInner);
+					}
+					inner[nrInner++] = side;
 				}
-				// If not faulty add to ok triangles
-			} else {
-				ok.add(temp);
 			}
-			toCheck.remove(temp);
 		}
 
-		// Remove faulty triangles
-		for (Triangle t : faulty) {
-			removeTriangle(t);
+		// Remove faulty triangles, this also removes them from the boundary
+		// edges
+		for (int k = 0; k < nrCavity; k++) {
+			removeTriangle(cavity[k]);
+			cavity[k] = null;
 		}
+		nrCavityTriangles += nrCavity;
+		nrRemoved += nrCavity;
+		nrCreated += nrBoundary;
 
 		// Remove faulty edges
-		for (Integer edgeID : toRemove) {
-			removeEdge(edgeID);
+		for (int k = 0; k < nrInner; k++) {
+			removeEdge(inner[k]);
+			inner[k] = null;
 		}
 
-		// Remove already removed triangles from boundary edges
+		// Add new edges from boundary points to v, the edge from a boundary
+		// point is created once and shared by the two triangles at it
 		QuadEdge bound;
-		for (int edgeID : bounds) {
-			bound = edges.get(edgeID);
-			for (Triangle t : faulty) {
-				if (bound.getTriangles().contains(t)) {
-					bound.getTriangles().remove(t);
-				}
-			}
-		}
-		// Add new edges from boundary points to v
-		// (use edges from bounds!)
-		QuadEdge tempQE;
-		QuadEdge tempQE2;
 		Triangle tempT;
-		Map<Vertex, QuadEdge> done = new HashMap<Vertex, QuadEdge>();
-		for (int ID : bounds) {
-			// Get triangle from id
-			tempQE = edges.get(ID);
+		Vertex end;
+		int slot;
+		for (int k = 0; k < nrBoundary; k++) {
+			bound = boundary[k];
+			boundary[k] = null;
 
 			// Create triangle between boundary edge and new point
-			tempT = new Triangle(tempQE.getVertices().get(0), tempQE
+			tempT = new Triangle(bound.getVertices().get(0), bound
 					.getVertices().get(1), v);
-			triangles.add(tempT);
+			addTriangle(tempT);
+			lastTriangle = tempT;
 			// Add triangle to edge
-			tempQE.addTriangle(tempT);
+			bound.addTriangle(tempT);
 
 			// Construct other two edges
 			for (int vertexNr = 0; vertexNr < 2; vertexNr++) {
+				end = bound.getVertices().get(vertexNr);
+				slot = end.getID() + 3;
 				// Check whether edge already exists
-				if (!done.containsKey(tempQE.getVertices().get(vertexNr))) {
+				if (spokeMarks[slot] != inside) {
 					// If not, create new edge
-					tempQE2 = new QuadEdge(tempQE.getVertices().get(vertexNr),
-							v, tempT, null, nrEdges);
-					edges.put(nrEdges, tempQE2);
-					nrEdges++;
-					done.put(tempQE.getVertices().get(vertexNr), tempQE2);
+					spokes[slot] = addEdge(end, v, tempT, null);
+					spokeMarks[slot] = inside;
 				} else {
 					// If it is, add triangle to existing edge
-					done.get(tempQE.getVertices().get(vertexNr)).addTriangle(
-							tempT);
+					spokes[slot].addTriangle(tempT);
+					spokes[slot] = null;
 				}
 			}
 		}
 	}
 
 	/**
-	 * Calculate Voronoi data for all vertices (area)
+	 * Find a triangle with v in its circumcircle. Walks from the last created
+	 * triangle towards v, crossing each time an edge that separates the
+	 * current triangle from v. The triangle containing v always has v in its
+	 * circumcircle. Only when the walk fails (it should not in a Delaunay
+	 * triangulation) all triangles are scanned.
+	 * 
+	 * @param v
+	 *            vertex to be located
+	 * @return triangle with v in its circumcircle
 	 */
-	public void calcVoronoi() {
-		// Generate voronoi data for each point
-		for (Vertex v : vertices) {
-			// Get voronoi cell vertices
-			for (int i : v.getEdges()) {
-				v.addVoronoiEdge(edges.get(i));
+	private Triangle locate(Vertex v) {
+		Triangle current = lastTriangle;
+		Triangle previous = null;
+		Triangle next;
+		QuadEdge e;
+		Vertex a, b;
+		int steps = 0;
+		// A walk never visits a triangle twice, so it cannot take more steps
+		// than there are triangles
+		while (current != null && steps <= triangles.size()) {
+			next = null;
+			for (int i = 0; i < current.getNrSides(); i++) {
+				e = current.getSide(i);
+				a = e.getVertices().get(0);
+				b = e.getVertices().get(1);
+				// Cross this edge if v and the third vertex of the current
+				// triangle lie on different sides of it
+				if (orientation(a, b, v)
+						* orientation(a, b, opposite(current, a, b)) < 0) {
+					next = e.getOther(current);
+					if (next == previous) {
+						next = null;
+					}
+					if (next != null) {
+						break;
+					}
+				}
+			}
+			if (next == null) {
+				// No edge separates v from this triangle, so v is inside
+				nrIncircleTests++;
+				if (current.inCircumcircle(v)) {
+					return current;
+				}
+				break;
+			}
+			previous = current;
+			current = next;
+			steps++;
+		}
+
+		// Walk failed, scan all triangles
+		for (int i = triangles.size() - 1; i >= 0; i--) {
+			if (triangles.get(i).inCircumcircle(v)) {
+				return triangles.get(i);
 			}
-			// Calculate area
-			v.calcArea();
 		}
+		throw new IllegalStateException("No triangle contains vertex "
+				+ v.getID());
 	}
 
 	/**
-	 * Remove edge with nr id
+	 * Get the vertex of triangle t that is not on the edge between a and b
 	 * 
-	 * @param id
-	 *            id of edge
+	 * @param t
+	 *            triangle
+	 * @param a
+	 *            first vertex of edge of t
+	 * @param b
+	 *            second vertex of edge of t
+	 * @return vertex of t opposite to edge between a and b
 	 */
-	private void removeEdge(int id) {
-		QuadEdge q = edges.get(id);
+	private Vertex opposite(Triangle t, Vertex a, Vertex b) {
+		for (Vertex c : t.getVertices()) {
+			if (c != a && c != b) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Calculate orientation of c with respect to the line through a and b
+	 * 
+	 * @param a
+	 *            first vertex of line
+	 * @param b
+	 *            second vertex of line
+	 * @param c
+	 *            vertex to be checked
+	 * @return positive if a, b and c are counterclockwise, negative if they
+	 *         are clockwise and zero if they are collinear
+	 */
+	private double orientation(Vertex a, Vertex b, Vertex c) {
+		return Math.signum(Predicates.orient2d(a.x(), a.y(), b.x(), b.y(),
+				c.x(), c.y()));
+	}
+
+	/**
+	 * Remove edge q
+	 * 
+	 * @param q
+	 *            edge to be removed
+	 */
+	private void removeEdge(QuadEdge q) {
+		int id = q.getID();
 		// Remove connection between vertices
 		q.getVertices().get(0).removeNeighbour(q.getVertices().get(1).getID());
 		q.getVertices().get(1).removeNeighbour(q.getVertices().get(0).getID());
@@ -347,51 +471,10 @@ public class Watson {
 	 */
 	private void removeTriangle(Triangle t) {
 		// Remove triangle from edges it has
-		for (int i : t.getEdges()) {
-			edges.get(i).removeTriangle(t);
+		for (int i = 0; i < t.getNrSides(); i++) {
+			t.getSide(i).removeTriangle(t);
 		}
 		// Remove triangle from list
-		triangles.remove(t);
-	}
-
-	/**
-	 * Get vertices
-	 * 
-	 * @return vertices
-	 */
-	public List<Vertex> getVertices() {
-		return vertices;
-	}
-
-	/**
-	 * Get edges
-	 * 
-	 * @return edges
-	 */
-	public Map<Integer, QuadEdge> getEdges() {
-		return edges;
-	}
-
-	/**
-	 * Get area of triangulation
-	 * 
-	 * @return area of triangulation
-	 */
-	public double getArea() {
-		double area = 0.0;
-		// Get all areas of all triangles
-		for (Triangle t : triangles) {
-			area += t.getArea();
-		}
-		return area;
-	}
-
-	/**
-	 * Get dimensions of data set
-	 * 
-	 * @return dimensions of data set
-	 */
-	public Rectangle getDimensions() {
-		return bounds;
+		removeFromList(t);
 	}
 }